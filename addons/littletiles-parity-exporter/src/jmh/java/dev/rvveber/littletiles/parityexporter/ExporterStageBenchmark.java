@@ -0,0 +1,125 @@
+package dev.rvveber.littletiles.parityexporter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.stream.JsonWriter;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.TagParser;
+import net.minecraft.server.Bootstrap;
+import team.creative.littletiles.common.block.little.tile.group.LittleGroup;
+import team.creative.littletiles.common.convertion.OldLittleTilesDataParser;
+
+/**
+ * Per-stage throughput of the lt-debug-export pipeline on the files in {@code fixtures/inputs}.
+ *
+ * Each benchmark isolates one stage, fed with the output of the previous stages prepared once in
+ * {@link #setUp()}: SNBT parsing, legacy conversion, {@link LittleGroup#load}, face evaluation,
+ * and streaming the group tree to JSON. Run with {@code ./gradlew jmh}, which enables the
+ * {@code gc} profiler so allocation rates are reported next to ops/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExporterStageBenchmark {
+
+    @Param({ "basic_lever.struct", "double_door.struct", "animated.struct", "contemporary style house.txt" })
+    public String fixture;
+
+    @Param({ "client", "server" })
+    public String geometryMode;
+
+    private Path fixturePath;
+    private String rawSnbt;
+    private CompoundTag parsedTag;
+    private CompoundTag normalizedTag;
+    private LittleGroup root;
+    private LtDebugExportCommand.GeometryMode mode;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+        LittleTilesBootstrap.init();
+
+        Path fixtures = Path.of(System.getProperty("lt.fixtures", "fixtures/inputs"));
+        fixturePath = fixtures.resolve(fixture);
+        rawSnbt = Files.readString(fixturePath, StandardCharsets.UTF_8);
+        parsedTag = TagParser.parseTag(rawSnbt);
+        normalizedTag = OldLittleTilesDataParser.isOld(parsedTag)
+                ? OldLittleTilesDataParser.convert(parsedTag.copy())
+                : parsedTag.copy();
+        root = LittleGroup.load(normalizedTag);
+        mode = LtDebugExportCommand.GeometryMode.fromArg(geometryMode);
+    }
+
+    @Benchmark
+    public CompoundTag parseSnbt() throws CommandSyntaxException {
+        return TagParser.parseTag(rawSnbt);
+    }
+
+    /** Read plus parse straight from the fixture file, as the export commands do. */
+    @Benchmark
+    public CompoundTag streamSnbt() throws IOException {
+        return SnbtReader.read(fixturePath);
+    }
+
+    /** Legacy inputs go through the converter on a copy, since the trial's tag is reused; current inputs are a no-op. */
+    @Benchmark
+    public CompoundTag convert() throws Exception {
+        return OldLittleTilesDataParser.isOld(parsedTag)
+                ? OldLittleTilesDataParser.convert(parsedTag.copy())
+                : parsedTag;
+    }
+
+    @Benchmark
+    public LittleGroup loadGroup() {
+        return LittleGroup.load(normalizedTag);
+    }
+
+    @Benchmark
+    public int evaluateFaces() {
+        return LtDebugExportCommand.evaluateFaces(root, mode);
+    }
+
+    /** Face evaluation plus JSON encoding of the group tree; subtract {@link #evaluateFaces()} for encoding alone. */
+    @Benchmark
+    public void encodeGroupTree() throws IOException {
+        LtDebugExportCommand.writeGroupTree(root, mode, LtDebugExportCommand.ReportFormat.PRETTY, Writer.nullWriter());
+    }
+
+    /** The largest single value in a report: the normalized SNBT string, escaped by Gson. */
+    @Benchmark
+    public int serializeNormalizedSnbt() throws IOException {
+        StringWriter buffer = new StringWriter(rawSnbt.length() + 64);
+        JsonWriter out = new JsonWriter(buffer);
+        out.setHtmlSafe(false);
+        out.value(normalizedTag.toString());
+        out.flush();
+        return buffer.getBuffer().length();
+    }
+}
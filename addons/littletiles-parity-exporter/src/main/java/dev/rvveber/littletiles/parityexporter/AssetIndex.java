@@ -0,0 +1,296 @@
+package dev.rvveber.littletiles.parityexporter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import net.neoforged.fml.ModList;
+import net.neoforged.fml.loading.FMLPaths;
+import net.neoforged.neoforgespi.language.IModFileInfo;
+
+/**
+ * In-memory index of every {@code assets/**} file visible to the exporter, built by walking each source once
+ * through NIO file systems.
+ *
+ * Sources are indexed in ascending priority, each overriding the paths of the ones before it: every loaded mod
+ * file in mod list order, which starts with Minecraft, then the resource packs selected in
+ * {@code <game dir>/options.txt} ({@code resourcePacks}, lowest priority first), as the game stacks them. Only
+ * {@code file/} packs are read from {@code <game dir>/resourcepacks}; without an {@code options.txt}, every zip
+ * file and folder there is used, by file name. A lookup, hit or miss, is one hash map probe instead of a class
+ * loader search. An index built from every loaded mod file is {@linkplain #isComplete() complete}: a path it does
+ * not have does not exist. Without mod files (the headless runner and the benchmarks) it only covers the
+ * resource packs, and lookups it misses fall back to the class loaders.
+ *
+ * The index is shared by all batches and rebuilt when the pack selection or a selected pack changes: names and
+ * order, the size and modification time of zip packs, and the file count and newest file modification time under
+ * a folder pack's {@code assets}. Mod files cannot change while the server runs. Resolvers hold the index
+ * through {@link #acquire()} and {@link #release()}, and a superseded index closes its pack file systems once no
+ * resolver holds it.
+ */
+final class AssetIndex {
+
+    private static AssetIndex current;
+
+    private final List<String> packSignatures;
+    private final Map<String, Path> entries;
+    private final List<FileSystem> packFileSystems;
+    private final int sources;
+    private final boolean complete;
+    private final long buildNanos;
+    private int users;
+    private boolean superseded;
+
+    private AssetIndex(
+            List<String> packSignatures,
+            Map<String, Path> entries,
+            List<FileSystem> packFileSystems,
+            int sources,
+            boolean complete,
+            long buildNanos) {
+        this.packSignatures = packSignatures;
+        this.entries = entries;
+        this.packFileSystems = packFileSystems;
+        this.sources = sources;
+        this.complete = complete;
+        this.buildNanos = buildNanos;
+    }
+
+    /** The shared index, rebuilt first if the resource packs changed since it was built. */
+    static synchronized AssetIndex current() {
+        List<String> signatures = packSignatures(gameDir());
+        if (current == null || !current.packSignatures.equals(signatures)) {
+            AssetIndex previous = current;
+            current = build(signatures);
+            if (previous != null) {
+                previous.superseded = true;
+                previous.closeIfUnused();
+            }
+        }
+        return current;
+    }
+
+    /** Like {@link #current()}, but keeps the index open until the matching {@link #release()}. */
+    static synchronized AssetIndex acquire() {
+        AssetIndex index = current();
+        index.users++;
+        return index;
+    }
+
+    void release() {
+        synchronized (AssetIndex.class) {
+            users--;
+            closeIfUnused();
+        }
+    }
+
+    /**
+     * {@code name@size@modified} for every selected zip pack and {@code name@dir<files>@<newest modified>} for every
+     * selected folder pack, lowest priority first; empty without packs. A folder's own modification time does not
+     * change when a file deeper inside it is edited, so folder packs are signed by their {@code assets} tree.
+     */
+    static List<String> packSignatures(Path gameDir) {
+        List<String> out = new ArrayList<>();
+        for (Path pack : listPacks(gameDir)) {
+            try {
+                out.add(Files.isDirectory(pack)
+                        ? pack.getFileName() + "@" + folderSignature(pack.resolve("assets"))
+                        : pack.getFileName() + "@" + Files.size(pack) + "@" + Files.getLastModifiedTime(pack).toMillis());
+            } catch (IOException e) {
+                out.add(pack.getFileName() + "@unreadable");
+            }
+        }
+        return List.copyOf(out);
+    }
+
+    /** {@code dir<files>@<newest modified>} over the regular files under {@code assetsRoot}. */
+    private static String folderSignature(Path assetsRoot) throws IOException {
+        if (!Files.isDirectory(assetsRoot))
+            return "dir0@0";
+        long files = 0;
+        long newest = Files.getLastModifiedTime(assetsRoot).toMillis();
+        try (Stream<Path> walk = Files.walk(assetsRoot)) {
+            for (Path path : (Iterable<Path>) walk::iterator) {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (attributes.isRegularFile())
+                    files++;
+                newest = Math.max(newest, attributes.lastModifiedTime().toMillis());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return "dir" + files + "@" + newest;
+    }
+
+    List<String> packSignatures() {
+        return packSignatures;
+    }
+
+    /** Opens {@code resourcePath} ({@code assets/<namespace>/...}), or returns null if no source has it. */
+    InputStream open(String resourcePath) throws IOException {
+        Path path = entries.get(resourcePath.startsWith("/") ? resourcePath.substring(1) : resourcePath);
+        return path != null ? Files.newInputStream(path) : null;
+    }
+
+    /** True if every loaded mod file was indexed, so a miss needs no class loader probe. */
+    boolean isComplete() {
+        return complete;
+    }
+
+    String describe() {
+        return "assets: " + entries.size() + " files from " + sources + " sources (" + packSignatures.size() +
+                " resource packs), indexed in " + buildNanos / 1_000_000 + " ms";
+    }
+
+    private void closeIfUnused() {
+        if (!superseded || users > 0)
+            return;
+        for (FileSystem fileSystem : packFileSystems) {
+            try {
+                fileSystem.close();
+            } catch (IOException e) {
+                LittleTilesParityExporter.LOGGER.warn("failed to close resource pack {}: {}", fileSystem, e.getMessage());
+            }
+        }
+        packFileSystems.clear();
+    }
+
+    private static AssetIndex build(List<String> signatures) {
+        long started = System.nanoTime();
+        Map<String, Path> entries = new HashMap<>();
+        List<FileSystem> packFileSystems = new ArrayList<>();
+        int sources = 0;
+        boolean complete = false;
+
+        try {
+            List<IModFileInfo> modFiles = ModList.get().getModFiles();
+            complete = !modFiles.isEmpty();
+            for (IModFileInfo modFile : modFiles) {
+                try {
+                    indexTree(modFile.getFile().findResource("assets"), entries);
+                    sources++;
+                } catch (Exception e) {
+                    complete = false;
+                    LittleTilesParityExporter.LOGGER.warn("skipping assets of mod file {}: {}", modFile.getFile().getFileName(), e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            LittleTilesParityExporter.LOGGER.warn("mod files are not available, asset lookups fall back to class loaders: {}", e.toString());
+        }
+
+        for (Path pack : listPacks(gameDir())) {
+            FileSystem zip = null;
+            try {
+                Path root = pack;
+                if (!Files.isDirectory(pack)) {
+                    zip = FileSystems.newFileSystem(pack);
+                    root = zip.getPath("/");
+                }
+                indexTree(root.resolve("assets"), entries);
+                sources++;
+                if (zip != null)
+                    packFileSystems.add(zip);
+            } catch (Exception e) {
+                LittleTilesParityExporter.LOGGER.warn("skipping unreadable resource pack {}: {}", pack, e.getMessage());
+                if (zip != null) {
+                    try {
+                        zip.close();
+                    } catch (IOException ignored) {}
+                }
+            }
+        }
+
+        AssetIndex index = new AssetIndex(
+                signatures, Collections.unmodifiableMap(entries), packFileSystems, sources, complete, System.nanoTime() - started);
+        LittleTilesParityExporter.LOGGER.info(index.describe());
+        return index;
+    }
+
+    private static void indexTree(Path assetsRoot, Map<String, Path> out) throws IOException {
+        if (assetsRoot == null || !Files.isDirectory(assetsRoot))
+            return;
+        try (Stream<Path> files = Files.find(assetsRoot, Integer.MAX_VALUE, (path, attributes) -> attributes.isRegularFile())) {
+            files.forEach(path -> out.put(toKey(assetsRoot, path), path));
+        }
+    }
+
+    /** Keys always use {@code /}, whatever the source file system's separator. */
+    private static String toKey(Path assetsRoot, Path path) {
+        StringBuilder key = new StringBuilder("assets");
+        for (Path name : assetsRoot.relativize(path))
+            key.append('/').append(name);
+        return key.toString();
+    }
+
+    private static Path gameDir() {
+        try {
+            return FMLPaths.GAMEDIR.get();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /** The selected packs that exist, lowest priority first. */
+    private static List<Path> listPacks(Path gameDir) {
+        if (gameDir == null)
+            return List.of();
+        Path packsDir = gameDir.resolve("resourcepacks").normalize();
+        List<String> selected = selectedPacks(gameDir.resolve("options.txt"));
+        if (selected != null) {
+            List<Path> out = new ArrayList<>();
+            for (String id : selected) {
+                // Built-in packs (vanilla, mod resources) are already covered by the mod files.
+                if (!id.startsWith("file/"))
+                    continue;
+                Path pack = packsDir.resolve(id.substring("file/".length())).normalize();
+                if (pack.startsWith(packsDir) && (Files.isDirectory(pack) || Files.isRegularFile(pack)))
+                    out.add(pack);
+            }
+            return out;
+        }
+        if (!Files.isDirectory(packsDir))
+            return List.of();
+        try (Stream<Path> packs = Files.list(packsDir)) {
+            return packs
+                    .filter(pack -> Files.isDirectory(pack) || pack.getFileName().toString().endsWith(".zip"))
+                    .sorted(Comparator.comparing(pack -> pack.getFileName().toString()))
+                    .toList();
+        } catch (IOException e) {
+            LittleTilesParityExporter.LOGGER.warn("cannot list resource packs in {}: {}", packsDir, e.getMessage());
+            return List.of();
+        }
+    }
+
+    /** The {@code resourcePacks} list of {@code options.txt}, or null if there is no such file or line. */
+    private static List<String> selectedPacks(Path optionsFile) {
+        if (!Files.isRegularFile(optionsFile))
+            return null;
+        try (Stream<String> lines = Files.lines(optionsFile, StandardCharsets.UTF_8)) {
+            String line = lines.filter(candidate -> candidate.startsWith("resourcePacks:")).findFirst().orElse(null);
+            if (line == null)
+                return null;
+            List<String> out = new ArrayList<>();
+            for (JsonElement id : JsonParser.parseString(line.substring("resourcePacks:".length())).getAsJsonArray())
+                out.add(id.getAsString());
+            return out;
+        } catch (Exception e) {
+            LittleTilesParityExporter.LOGGER.warn("cannot read the resource pack selection in {}: {}", optionsFile, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package dev.rvveber.littletiles.parityexporter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Content-addressed manifest that lets a batch skip inputs whose outputs are already up to date.
+ *
+ * Each input is keyed by the SHA-256 of its bytes combined with a configuration key (command name,
+ * runtime versions and every option that changes the output). An input is a hit when its key matches
+ * the manifest entry and every output recorded for it still exists; the entry's stats are then
+ * reported as if the file had been exported again. Content hashes are reused while an input's size
+ * and modification time are unchanged, so a re-run over an unchanged folder does not read the inputs.
+ *
+ * The manifest lives in the output directory as {@code .<command>-cache.json} and is replaced
+ * atomically when the batch finishes; entries of inputs that no longer exist in the probed input
+ * directory are dropped then. Entries may be probed and recorded from several worker threads.
+ *
+ * Several caches can share a manifest, e.g. {@code /lt-export} into a folder that a watcher also
+ * writes to. Saving therefore holds a lock per manifest, re-reads the manifest, and only replaces the
+ * entries this cache recorded, so entries saved by another cache in the meantime are kept.
+ */
+final class ExportCache {
+
+    private static final int MANIFEST_VERSION = 1;
+    private static final Map<Path, Object> MANIFEST_LOCKS = new ConcurrentHashMap<>();
+    private static final Gson GSON = new GsonBuilder()
+            .setPrettyPrinting()
+            .disableHtmlEscaping()
+            .create();
+
+    private final Path outputDir;
+    private final Path manifestPath;
+    private final String configKey;
+    private final boolean reuse;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> recorded = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private volatile Path inputDir;
+
+    private ExportCache(Path outputDir, Path manifestPath, String configKey, boolean reuse) {
+        this.outputDir = outputDir;
+        this.manifestPath = manifestPath;
+        this.configKey = configKey;
+        this.reuse = reuse;
+    }
+
+    /**
+     * Loads the manifest for {@code command} from {@code outputDir}. With {@code reuse == false} every input is
+     * a miss, but the manifest is still refreshed so the next run can hit.
+     */
+    static ExportCache open(Path outputDir, String command, String configKey, boolean reuse) {
+        ExportCache cache = new ExportCache(outputDir, outputDir.resolve("." + command + "-cache.json"), command + "\n" + configKey, reuse);
+        synchronized (cache.lock()) {
+            cache.entries.putAll(readManifest(cache.manifestPath));
+        }
+        return cache;
+    }
+
+    /** Hashes {@code inputPath} (or reuses its hash) and checks it against the manifest. */
+    Probe probe(Path inputPath) throws IOException {
+        String inputName = inputPath.getFileName().toString();
+        inputDir = inputPath.toAbsolutePath().getParent();
+        long size = Files.size(inputPath);
+        long modified = Files.getLastModifiedTime(inputPath).toMillis();
+        Entry previous = entries.get(inputName);
+        String contentHash = previous != null && previous.size == size && previous.modified == modified
+                ? previous.contentHash
+                : hashFile(inputPath);
+        String key = sha256Hex((configKey + "\n" + contentHash).getBytes(StandardCharsets.UTF_8));
+        JsonObject stats = reuse && previous != null && previous.key.equals(key) && outputsExist(previous.outputs)
+                ? previous.stats
+                : null;
+        (stats != null ? hits : misses).incrementAndGet();
+        return new Probe(inputName, size, modified, contentHash, key, stats);
+    }
+
+    /** Records the outputs and summary stats of a freshly exported input. */
+    void record(Probe probe, List<Path> outputs, JsonObject stats) {
+        JsonArray relative = new JsonArray();
+        for (Path output : outputs)
+            relative.add(outputDir.relativize(output).toString().replace('\\', '/'));
+        entries.put(probe.inputName, new Entry(probe.size, probe.modified, probe.contentHash, probe.key, relative, stats));
+        recorded.add(probe.inputName);
+    }
+
+    /**
+     * Merges the entries recorded here since the last save into the manifest on disk, which other caches may
+     * have saved to since, and takes over the entries they saved.
+     */
+    void save() throws IOException {
+        synchronized (lock()) {
+            Set<String> saving = Set.copyOf(recorded);
+            Map<String, Entry> merged = new TreeMap<>(readManifest(manifestPath));
+            for (String inputName : saving) {
+                Entry entry = entries.get(inputName);
+                if (entry != null)
+                    merged.put(inputName, entry);
+            }
+            Path probedDir = inputDir;
+            if (probedDir != null) {
+                merged.keySet().removeIf(inputName -> !Files.exists(probedDir.resolve(inputName)));
+                entries.keySet().removeIf(inputName -> !Files.exists(probedDir.resolve(inputName)));
+            }
+
+            JsonObject root = new JsonObject();
+            root.addProperty("version", MANIFEST_VERSION);
+            JsonObject entriesJson = new JsonObject();
+            for (Map.Entry<String, Entry> entry : merged.entrySet())
+                entriesJson.add(entry.getKey(), entry.getValue().toJson());
+            root.add("entries", entriesJson);
+
+            Path tempPath = manifestPath.resolveSibling(manifestPath.getFileName() + ".tmp");
+            try {
+                try (Writer writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+                    GSON.toJson(root, writer);
+                    writer.write(System.lineSeparator());
+                }
+                Files.move(tempPath, manifestPath, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tempPath);
+            }
+            recorded.removeAll(saving);
+            for (Map.Entry<String, Entry> entry : merged.entrySet())
+                if (!recorded.contains(entry.getKey()))
+                    entries.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    String describe() {
+        return "cache: hits=" + hits.get() + ", misses=" + misses.get() + (reuse ? "" : " (cache=off)");
+    }
+
+    private Object lock() {
+        return MANIFEST_LOCKS.computeIfAbsent(manifestPath.toAbsolutePath().normalize(), path -> new Object());
+    }
+
+    /** The entries of the manifest at {@code manifestPath}; empty if there is none or it cannot be read. */
+    private static Map<String, Entry> readManifest(Path manifestPath) {
+        Map<String, Entry> out = new HashMap<>();
+        if (!Files.isRegularFile(manifestPath))
+            return out;
+        try (Reader reader = Files.newBufferedReader(manifestPath, StandardCharsets.UTF_8)) {
+            JsonObject root = JsonParser.parseReader(reader).getAsJsonObject();
+            if (!root.has("version") || root.get("version").getAsInt() != MANIFEST_VERSION || !root.has("entries"))
+                return out;
+            for (Map.Entry<String, JsonElement> entry : root.getAsJsonObject("entries").entrySet()) {
+                JsonObject json = entry.getValue().getAsJsonObject();
+                out.put(entry.getKey(), new Entry(
+                        json.get("size").getAsLong(),
+                        json.get("modified").getAsLong(),
+                        json.get("contentSha256").getAsString(),
+                        json.get("key").getAsString(),
+                        json.getAsJsonArray("outputs"),
+                        json.getAsJsonObject("stats")));
+            }
+        } catch (Exception e) {
+            out.clear();
+            LittleTilesParityExporter.LOGGER.warn("ignoring unreadable export cache manifest {}", manifestPath, e);
+        }
+        return out;
+    }
+
+    private boolean outputsExist(JsonArray outputs) {
+        for (JsonElement output : outputs)
+            if (!Files.isRegularFile(outputDir.resolve(output.getAsString())))
+                return false;
+        return true;
+    }
+
+    private static String hashFile(Path path) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) >= 0)
+                digest.update(buffer, 0, read);
+        }
+        return toHex(digest.digest());
+    }
+
+    private static String sha256Hex(byte[] bytes) {
+        return toHex(newDigest().digest(bytes));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    /** Result of {@link #probe}: a hit carries the stats recorded for the previous export. */
+    record Probe(String inputName, long size, long modified, String contentHash, String key, JsonObject stats) {
+        boolean hit() {
+            return stats != null;
+        }
+    }
+
+    private record Entry(long size, long modified, String contentHash, String key, JsonArray outputs, JsonObject stats) {
+        JsonObject toJson() {
+            JsonObject out = new JsonObject();
+            out.addProperty("size", size);
+            out.addProperty("modified", modified);
+            out.addProperty("contentSha256", contentHash);
+            out.addProperty("key", key);
+            out.add("outputs", outputs);
+            out.add("stats", stats);
+            return out;
+        }
+    }
+}
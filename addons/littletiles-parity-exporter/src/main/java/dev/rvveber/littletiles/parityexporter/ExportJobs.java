@@ -0,0 +1,294 @@
+package dev.rvveber.littletiles.parityexporter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.MinecraftServer;
+
+/**
+ * Background execution for export batches.
+ *
+ * Export commands validate their arguments on the server thread, then hand the actual batch to a
+ * job thread and return immediately. Jobs report per-file progress and check for cancellation
+ * between files, so a cancelled job stops cleanly after the files already in flight. Chat
+ * feedback is marshalled back onto the server thread; the headless runner prints it instead.
+ */
+final class ExportJobs {
+
+    private static final int FINISHED_JOBS_KEPT = 16;
+
+    private static final AtomicInteger NEXT_JOB_ID = new AtomicInteger(1);
+    private static final Map<Integer, Job> JOBS = new ConcurrentSkipListMap<>();
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "lt-export-job");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ExportJobs() {}
+
+    @FunctionalInterface
+    interface JobBody {
+        void run(Job job) throws Exception;
+    }
+
+    /** Where a job's progress, summary and failure lines go. */
+    interface Feedback {
+        void success(String message);
+
+        void failure(String message);
+    }
+
+    enum JobState {
+        RUNNING,
+        COMPLETED,
+        CANCELLED,
+        FAILED
+    }
+
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        LiteralArgumentBuilder<CommandSourceStack> status = Commands.literal("lt-export-status")
+                .requires(source -> source.hasPermission(2))
+                .executes(context -> executeStatus(context.getSource(), -1))
+                .then(Commands.argument("job_id", IntegerArgumentType.integer(1))
+                        .executes(context -> executeStatus(
+                                context.getSource(),
+                                IntegerArgumentType.getInteger(context, "job_id"))));
+        dispatcher.register(status);
+
+        LiteralArgumentBuilder<CommandSourceStack> cancel = Commands.literal("lt-export-cancel")
+                .requires(source -> source.hasPermission(2))
+                .executes(context -> executeCancel(context.getSource(), -1))
+                .then(Commands.argument("job_id", IntegerArgumentType.integer(1))
+                        .executes(context -> executeCancel(
+                                context.getSource(),
+                                IntegerArgumentType.getInteger(context, "job_id"))));
+        dispatcher.register(cancel);
+    }
+
+    static Job submit(CommandSourceStack source, String command, int totalFiles, JobBody body) {
+        Job job = new Job(NEXT_JOB_ID.getAndIncrement(), command, totalFiles, commandFeedback(source));
+        JOBS.put(job.id, job);
+        pruneFinishedJobs();
+        EXECUTOR.execute(() -> {
+            Thread.currentThread().setName("lt-export-job-" + job.id);
+            runJob(job, body);
+        });
+        source.sendSuccess(() -> Component.literal(command + " job #" + job.id + " started for " + totalFiles +
+                " files (/lt-export-status " + job.id + ", /lt-export-cancel " + job.id + ")"), false);
+        return job;
+    }
+
+    /**
+     * Runs a batch on the calling thread without a server, e.g. from the headless runner. The job is not listed
+     * by {@code /lt-export-status}; its final state is returned.
+     */
+    static JobState runInline(String command, int totalFiles, Feedback feedback, JobBody body) {
+        Job job = new Job(NEXT_JOB_ID.getAndIncrement(), command, totalFiles, feedback);
+        runJob(job, body);
+        return job.state();
+    }
+
+    /** Sends lines to {@code source} on the server thread. */
+    private static Feedback commandFeedback(CommandSourceStack source) {
+        return new Feedback() {
+            @Override
+            public void success(String message) {
+                runOnServerThread(source, () -> source.sendSuccess(() -> Component.literal(message), false));
+            }
+
+            @Override
+            public void failure(String message) {
+                runOnServerThread(source, () -> source.sendFailure(Component.literal(message)));
+            }
+        };
+    }
+
+    private static void runOnServerThread(CommandSourceStack source, Runnable runnable) {
+        MinecraftServer server = source.getServer();
+        if (server != null)
+            server.execute(runnable);
+        else
+            runnable.run();
+    }
+
+    /** Requests cancellation of every running job, e.g. when the server is stopping. */
+    static void cancelAll() {
+        for (Job job : JOBS.values())
+            job.cancel();
+    }
+
+    private static void runJob(Job job, JobBody body) {
+        try {
+            body.run(job);
+            job.finish(job.isCancelRequested() ? JobState.CANCELLED : JobState.COMPLETED);
+        } catch (InterruptedException e) {
+            job.finish(JobState.CANCELLED);
+            job.sendFailure(job.command + " job #" + job.id + " cancelled after " + job.completedFiles() + "/" + job.totalFiles + " files");
+        } catch (Exception e) {
+            job.finish(JobState.FAILED);
+            job.sendFailure(job.command + " batch failed: " + e.getMessage());
+            LittleTilesParityExporter.LOGGER.error("{} job #{} failed", job.command, job.id, e);
+        }
+    }
+
+    private static void pruneFinishedJobs() {
+        List<Integer> finished = new ArrayList<>();
+        for (Job job : JOBS.values())
+            if (job.state() != JobState.RUNNING)
+                finished.add(job.id);
+        for (int i = 0; i < finished.size() - FINISHED_JOBS_KEPT; i++)
+            JOBS.remove(finished.get(i));
+    }
+
+    private static int executeStatus(CommandSourceStack source, int jobId) {
+        if (jobId > 0) {
+            Job job = JOBS.get(jobId);
+            if (job == null) {
+                source.sendFailure(Component.literal("lt-export-status: unknown job #" + jobId));
+                return 0;
+            }
+            String line = job.describe();
+            source.sendSuccess(() -> Component.literal(line), false);
+            return 1;
+        }
+
+        if (JOBS.isEmpty()) {
+            source.sendSuccess(() -> Component.literal("lt-export-status: no export jobs"), false);
+            return 1;
+        }
+        for (Job job : JOBS.values()) {
+            String line = job.describe();
+            source.sendSuccess(() -> Component.literal(line), false);
+        }
+        return 1;
+    }
+
+    private static int executeCancel(CommandSourceStack source, int jobId) {
+        List<Job> targets = new ArrayList<>();
+        if (jobId > 0) {
+            Job job = JOBS.get(jobId);
+            if (job == null) {
+                source.sendFailure(Component.literal("lt-export-cancel: unknown job #" + jobId));
+                return 0;
+            }
+            targets.add(job);
+        } else {
+            for (Job job : JOBS.values())
+                if (job.state() == JobState.RUNNING)
+                    targets.add(job);
+        }
+
+        int cancelled = 0;
+        for (Job job : targets)
+            if (job.cancel())
+                cancelled++;
+
+        int count = cancelled;
+        if (count == 0) {
+            source.sendFailure(Component.literal("lt-export-cancel: no running job to cancel"));
+            return 0;
+        }
+        source.sendSuccess(() -> Component.literal("lt-export-cancel: cancellation requested for " + count + " job(s)"), false);
+        return 1;
+    }
+
+    static final class Job {
+        final int id;
+        final String command;
+        final int totalFiles;
+        final long startedNanos = System.nanoTime();
+        private final Feedback feedback;
+        private final AtomicInteger completedFiles = new AtomicInteger();
+        private volatile boolean cancelRequested;
+        private volatile JobState state = JobState.RUNNING;
+        private volatile long finishedNanos;
+
+        Job(int id, String command, int totalFiles, Feedback feedback) {
+            this.id = id;
+            this.command = command;
+            this.totalFiles = totalFiles;
+            this.feedback = feedback;
+        }
+
+        /** Checked by batch loops before each file; files already in flight still finish. */
+        boolean isCancelRequested() {
+            return cancelRequested;
+        }
+
+        void fileCompleted() {
+            completedFiles.incrementAndGet();
+        }
+
+        int completedFiles() {
+            return completedFiles.get();
+        }
+
+        JobState state() {
+            return state;
+        }
+
+        boolean cancel() {
+            if (state != JobState.RUNNING || cancelRequested)
+                return false;
+            cancelRequested = true;
+            return true;
+        }
+
+        void sendSuccess(String message) {
+            feedback.success(message);
+        }
+
+        void sendFailure(String message) {
+            feedback.failure(message);
+        }
+
+        private void finish(JobState finalState) {
+            finishedNanos = System.nanoTime();
+            state = finalState;
+        }
+
+        String describe() {
+            int done = completedFiles.get();
+            long endNanos = state == JobState.RUNNING ? System.nanoTime() : finishedNanos;
+            double elapsedSeconds = Math.max(0, endNanos - startedNanos) / 1_000_000_000.0;
+            double filesPerSecond = elapsedSeconds > 0 ? done / elapsedSeconds : 0;
+
+            StringBuilder out = new StringBuilder();
+            out.append(command).append(" job #").append(id)
+                    .append(" ").append(state.name().toLowerCase())
+                    .append(" (files=").append(done).append('/').append(totalFiles)
+                    .append(", elapsed=").append(formatSeconds(elapsedSeconds))
+                    .append(", throughput=").append(String.format("%.2f", filesPerSecond)).append(" files/s");
+            if (state == JobState.RUNNING) {
+                if (done > 0 && filesPerSecond > 0)
+                    out.append(", eta=").append(formatSeconds((totalFiles - done) / filesPerSecond));
+                else
+                    out.append(", eta=unknown");
+                if (cancelRequested)
+                    out.append(", cancelling");
+            }
+            out.append(')');
+            return out.toString();
+        }
+
+        private static String formatSeconds(double seconds) {
+            long total = Math.round(seconds);
+            if (total < 60)
+                return String.format("%.1fs", seconds);
+            return (total / 60) + "m" + String.format("%02d", total % 60) + "s";
+        }
+    }
+}
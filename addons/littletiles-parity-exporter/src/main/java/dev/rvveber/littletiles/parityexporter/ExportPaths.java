@@ -0,0 +1,28 @@
+package dev.rvveber.littletiles.parityexporter;
+
+import java.nio.file.Path;
+
+import net.minecraft.server.MinecraftServer;
+
+/** Path handling shared by the export commands. */
+final class ExportPaths {
+
+    private ExportPaths() {}
+
+    /** Resolves a command argument: absolute paths as given, relative ones against the server directory. */
+    static Path resolve(MinecraftServer server, String raw) {
+        Path path = Path.of(raw);
+        if (path.isAbsolute())
+            return path.normalize();
+        return server.getFile(raw).normalize();
+    }
+
+    /** The input file name without its last extension, which every output of that input is named after. */
+    static String baseName(String inputFileName) {
+        int dot = inputFileName.lastIndexOf('.');
+        String base = dot > 0 ? inputFileName.substring(0, dot) : inputFileName;
+        if (base.isBlank())
+            base = inputFileName;
+        return base;
+    }
+}
@@ -0,0 +1,169 @@
+package dev.rvveber.littletiles.parityexporter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Nanosecond phase timings for a single exported file.
+ *
+ * Phases are recorded in pipeline order with {@link #lap(String)}, which charges the time since
+ * the previous lap to the named phase. Phases that interleave with others (face evaluation while
+ * streaming the report, texture copies while resolving models) are added separately with
+ * {@link #add(String, long)} and subtracted from the enclosing lap via {@link #exclude(long)}.
+ *
+ * A report is encoded before its own output file is written, so the tail of the pipeline (the final
+ * encode step and {@code write}) only shows up in the batch roll-up.
+ */
+final class ExportTimings {
+
+    static final String PARSE = "parse";
+    static final String CONVERT = "convert";
+    static final String LOAD = "load";
+    static final String OCCLUDER_INDEX = "occluderIndex";
+    static final String FACE_EVALUATION = "faceEvaluation";
+    static final String FACE_MERGE = "faceMerge";
+    static final String TEXTURE_RESOLVE = "textureResolve";
+    static final String TEXTURE_EXPORT = "textureExport";
+    static final String ATLAS = "atlas";
+    static final String SNBT_SIDECAR = "snbtSidecar";
+    static final String ENCODE = "encode";
+    static final String WRITE = "write";
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private long mark = System.nanoTime();
+    private long excluded;
+
+    /** Charges the time since the previous lap, minus anything {@linkplain #exclude excluded}, to {@code phase}. */
+    long lap(String phase) {
+        long now = System.nanoTime();
+        long nanos = Math.max(0, now - mark - excluded);
+        mark = now;
+        excluded = 0;
+        add(phase, nanos);
+        return nanos;
+    }
+
+    void add(String phase, long nanos) {
+        phases.merge(phase, nanos, Long::sum);
+    }
+
+    /** Marks {@code nanos} of the running lap as already charged to another phase. */
+    void exclude(long nanos) {
+        excluded += nanos;
+    }
+
+    long totalNanos() {
+        long total = 0;
+        for (long nanos : phases.values())
+            total += nanos;
+        return total;
+    }
+
+    void write(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("unit").value("ns");
+        for (Map.Entry<String, Long> entry : phases.entrySet())
+            out.name(entry.getKey()).value(entry.getValue());
+        out.name("total").value(totalNanos());
+        out.endObject();
+    }
+
+    JsonObject toJson() {
+        JsonObject out = new JsonObject();
+        out.addProperty("unit", "ns");
+        for (Map.Entry<String, Long> entry : phases.entrySet())
+            out.addProperty(entry.getKey(), entry.getValue());
+        out.addProperty("total", totalNanos());
+        return out;
+    }
+
+    /** One-line summary of every phase and the total, e.g. {@code parse=1.2ms, load=0.4ms, total=1.6ms}. */
+    String describe() {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, Long> entry : phases.entrySet())
+            out.append(entry.getKey()).append('=').append(Rollup.formatMillis(entry.getValue())).append(", ");
+        return out.append("total=").append(Rollup.formatMillis(totalNanos())).toString();
+    }
+
+    /** The phases and total as an HTTP {@code Server-Timing} header value ({@code name;dur=<ms>, ...}). */
+    String toServerTiming() {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, Long> entry : phases.entrySet())
+            appendServerTiming(out, entry.getKey(), entry.getValue());
+        appendServerTiming(out, "total", totalNanos());
+        return out.toString();
+    }
+
+    static void appendServerTiming(StringBuilder out, String name, long nanos) {
+        if (out.length() > 0)
+            out.append(", ");
+        out.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0));
+    }
+
+    /** Batch-level roll-up: per-phase totals, per-file p50/p95 and the slowest file. */
+    static final class Rollup {
+        private final Map<String, Long> totals = new LinkedHashMap<>();
+        private final List<Long> fileTotals = new ArrayList<>();
+        private String slowestFile;
+        private long slowestNanos = -1;
+
+        void record(String fileName, ExportTimings timings) {
+            for (Map.Entry<String, Long> entry : timings.phases.entrySet())
+                totals.merge(entry.getKey(), entry.getValue(), Long::sum);
+            long total = timings.totalNanos();
+            fileTotals.add(total);
+            if (total > slowestNanos) {
+                slowestNanos = total;
+                slowestFile = fileName;
+            }
+        }
+
+        boolean isEmpty() {
+            return fileTotals.isEmpty();
+        }
+
+        /** One-line summary: total time, p50/p95 per file and the slowest file. */
+        String describeFiles() {
+            long[] sorted = fileTotals.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            long total = 0;
+            for (long nanos : sorted)
+                total += nanos;
+            return "timings: total=" + formatMillis(total) +
+                    ", p50=" + formatMillis(percentile(sorted, 0.50)) +
+                    ", p95=" + formatMillis(percentile(sorted, 0.95)) +
+                    ", slowest=" + slowestFile + " (" + formatMillis(slowestNanos) + ")";
+        }
+
+        /** One-line summary of the time spent in each phase across the batch. */
+        String describePhases() {
+            StringBuilder out = new StringBuilder("phases:");
+            boolean first = true;
+            for (Map.Entry<String, Long> entry : totals.entrySet()) {
+                out.append(first ? " " : ", ").append(entry.getKey()).append('=').append(formatMillis(entry.getValue()));
+                first = false;
+            }
+            return out.toString();
+        }
+
+        /** Nearest-rank percentile over an ascending array. */
+        private static long percentile(long[] sorted, double fraction) {
+            if (sorted.length == 0)
+                return 0;
+            int rank = (int) Math.ceil(fraction * sorted.length);
+            return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+        }
+
+        private static String formatMillis(long nanos) {
+            return String.format(Locale.ROOT, "%.1fms", nanos / 1_000_000.0);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package dev.rvveber.littletiles.parityexporter;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded per-file workers for export batches.
+ *
+ * Runs one task per input file on at most {@code workers} daemon threads, or inline for a single worker. A file
+ * that starts after cancellation was requested is skipped; every file, skipped or not, counts towards the job's
+ * progress. Outcomes come back in input order regardless of worker count, so aggregation stays deterministic.
+ */
+final class ExportWorkers {
+
+    private ExportWorkers() {}
+
+    /** Exports one input file; any exception is recorded as that file's error. */
+    @FunctionalInterface
+    interface FileTask<T> {
+        T run(Path inputPath) throws Exception;
+    }
+
+    /** Per-file batch outcome; neither result nor error is set when the job was cancelled first. */
+    record Outcome<T>(Path inputPath, T result, Throwable error) {}
+
+    static <T> List<Outcome<T>> run(
+            ExportJobs.Job job,
+            String command,
+            List<Path> inputFiles,
+            int workers,
+            FileTask<T> task) throws InterruptedException {
+        List<Outcome<T>> out = new ArrayList<>(inputFiles.size());
+        int poolSize = Math.max(1, Math.min(workers, inputFiles.size()));
+        if (poolSize == 1) {
+            for (Path inputPath : inputFiles)
+                out.add(runOne(job, command, inputPath, task));
+            return out;
+        }
+
+        List<Callable<Outcome<T>>> tasks = new ArrayList<>(inputFiles.size());
+        for (Path inputPath : inputFiles)
+            tasks.add(() -> runOne(job, command, inputPath, task));
+
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize, newWorkerThreadFactory(command));
+        try {
+            List<Future<Outcome<T>>> futures = executor.invokeAll(tasks);
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    out.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    out.add(new Outcome<>(inputFiles.get(i), null, cause));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return out;
+    }
+
+    private static <T> Outcome<T> runOne(ExportJobs.Job job, String command, Path inputPath, FileTask<T> task) {
+        if (job.isCancelRequested())
+            return new Outcome<>(inputPath, null, null);
+        try {
+            return new Outcome<>(inputPath, task.run(inputPath), null);
+        } catch (Exception e) {
+            LittleTilesParityExporter.LOGGER.error("{} failed for input {}", command, inputPath, e);
+            return new Outcome<>(inputPath, null, e);
+        } finally {
+            job.fileCompleted();
+        }
+    }
+
+    private static ThreadFactory newWorkerThreadFactory(String command) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, command + "-worker-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
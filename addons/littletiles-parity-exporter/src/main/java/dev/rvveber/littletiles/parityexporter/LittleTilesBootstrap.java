@@ -0,0 +1,66 @@
+package dev.rvveber.littletiles.parityexporter;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import team.creative.creativecore.Side;
+import team.creative.creativecore.common.config.api.ICreativeConfig;
+import team.creative.littletiles.LittleTiles;
+import team.creative.littletiles.common.block.little.tile.group.LittleGroup;
+import team.creative.littletiles.common.config.LittleTilesConfig;
+import team.creative.littletiles.common.convertion.OldLittleTilesDataParser;
+import team.creative.littletiles.common.grid.LittleGrid;
+import team.creative.littletiles.common.structure.registry.LittleStructureRegistry;
+
+/**
+ * The part of LittleTiles mod construction that loading and evaluating a group needs, for runs without mod
+ * loading (the headless runner and the benchmarks). Expects the vanilla bootstrap to have run.
+ *
+ * Installs a default {@link LittleTilesConfig} as {@link LittleTiles#CONFIG} and runs its {@code configured}
+ * callbacks, which set up the {@link LittleGrid} sizes and the default grid, as CreativeCore does after loading
+ * a config file with default values. Then registers the structure types, so structure ids in inputs resolve,
+ * and initializes the loader and legacy converter classes.
+ */
+final class LittleTilesBootstrap {
+
+    private static boolean done;
+
+    private LittleTilesBootstrap() {}
+
+    static synchronized void init() {
+        if (done)
+            return;
+        if (LittleTiles.CONFIG == null)
+            LittleTiles.CONFIG = new LittleTilesConfig();
+        configure(LittleTiles.CONFIG);
+        if (LittleGrid.defaultGrid() == null)
+            throw new IllegalStateException("LittleTiles config did not set up a default grid");
+
+        LittleStructureRegistry.initStructures();
+        try {
+            ClassLoader loader = LittleTilesBootstrap.class.getClassLoader();
+            Class.forName(LittleGroup.class.getName(), true, loader);
+            Class.forName(OldLittleTilesDataParser.class.getName(), true, loader);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("LittleTiles is not on the classpath", e);
+        }
+        done = true;
+    }
+
+    /** Runs the {@code configured} callbacks of nested sections first, then of {@code config} itself. */
+    private static void configure(Object config) {
+        for (Field field : config.getClass().getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || !ICreativeConfig.class.isAssignableFrom(field.getType()))
+                continue;
+            try {
+                Object section = field.get(config);
+                if (section != null)
+                    configure(section);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("cannot read LittleTiles config section " + field.getName(), e);
+            }
+        }
+        if (config instanceof ICreativeConfig creative)
+            creative.configured(Side.SERVER);
+    }
+}
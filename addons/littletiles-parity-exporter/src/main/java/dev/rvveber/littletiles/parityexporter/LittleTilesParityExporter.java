@@ -7,6 +7,7 @@ import net.neoforged.bus.api.IEventBus;
 import net.neoforged.fml.common.Mod;
 import net.neoforged.neoforge.common.NeoForge;
 import net.neoforged.neoforge.event.server.ServerStartingEvent;
+import net.neoforged.neoforge.event.server.ServerStoppingEvent;
 
 @Mod(LittleTilesParityExporter.MOD_ID)
 public final class LittleTilesParityExporter {
@@ -16,12 +17,29 @@ public final class LittleTilesParityExporter {
 
     public LittleTilesParityExporter(IEventBus modBus) {
         NeoForge.EVENT_BUS.addListener(this::onServerStarting);
+        NeoForge.EVENT_BUS.addListener(this::onServerStopping);
     }
 
     private void onServerStarting(ServerStartingEvent event) {
         LtDebugExportCommand.register(event.getServer().getCommands().getDispatcher());
         LtTextureExportCommand.register(event.getServer().getCommands().getDispatcher());
+        LtGltfExportCommand.register(event.getServer().getCommands().getDispatcher());
+        LtExportCommand.register(event.getServer().getCommands().getDispatcher());
+        LtExportWatchCommand.register(event.getServer().getCommands().getDispatcher());
+        LtExportHttpCommand.register(event.getServer().getCommands().getDispatcher());
+        ExportJobs.register(event.getServer().getCommands().getDispatcher());
         LOGGER.info("Registered /lt-debug-export command");
         LOGGER.info("Registered /lt-texture-export command");
+        LOGGER.info("Registered /lt-gltf-export command");
+        LOGGER.info("Registered /lt-export command");
+        LOGGER.info("Registered /lt-export-watch command");
+        LOGGER.info("Registered /lt-export-http command");
+        LOGGER.info("Registered /lt-export-status and /lt-export-cancel commands");
+    }
+
+    private void onServerStopping(ServerStoppingEvent event) {
+        ExportJobs.cancelAll();
+        LtExportWatchCommand.stopAll();
+        LtExportHttpCommand.stop();
     }
 }
@@ -0,0 +1,40 @@
+package dev.rvveber.littletiles.parityexporter;
+
+import java.io.Reader;
+import java.nio.file.Path;
+
+import net.minecraft.nbt.CompoundTag;
+import team.creative.littletiles.common.block.little.tile.group.LittleGroup;
+import team.creative.littletiles.common.convertion.OldLittleTilesDataParser;
+
+/**
+ * An input file read, converted to the current format and loaded once, ready to be handed to any
+ * number of export stages.
+ */
+record LoadedInput(Path inputPath, boolean legacy, CompoundTag normalizedTag, LittleGroup root) {
+
+    /** Charges the {@code parse}, {@code convert} and {@code load} phases to {@code timings}. */
+    static LoadedInput load(Path inputPath, ExportTimings timings) throws Exception {
+        return load(inputPath, SnbtReader.read(inputPath), timings);
+    }
+
+    /** Loads SNBT that is not in a file, e.g. a request body; {@code inputPath} only labels the reports. */
+    static LoadedInput load(Path inputPath, Reader snbt, ExportTimings timings) throws Exception {
+        return load(inputPath, SnbtReader.read(snbt), timings);
+    }
+
+    private static LoadedInput load(Path inputPath, CompoundTag parsedTag, ExportTimings timings) throws Exception {
+        timings.lap(ExportTimings.PARSE);
+
+        // The parsed tag is not used again, so the converter may work on it in place.
+        boolean legacy = OldLittleTilesDataParser.isOld(parsedTag);
+        CompoundTag normalizedTag = legacy
+                ? OldLittleTilesDataParser.convert(parsedTag)
+                : parsedTag;
+        timings.lap(ExportTimings.CONVERT);
+
+        LittleGroup root = LittleGroup.load(normalizedTag);
+        timings.lap(ExportTimings.LOAD);
+        return new LoadedInput(inputPath, legacy, normalizedTag, root);
+    }
+}
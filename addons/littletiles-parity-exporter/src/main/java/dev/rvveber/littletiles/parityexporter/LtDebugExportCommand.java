@@ -1,35 +1,51 @@
 package dev.rvveber.littletiles.parityexporter;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HexFormat;
 import java.util.EnumMap;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
 import com.mojang.brigadier.arguments.StringArgumentType;
 
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
-import net.minecraft.nbt.CompoundTag;
 import net.minecraft.SharedConstants;
-import net.minecraft.nbt.TagParser;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.world.level.Level;
 import net.neoforged.fml.ModList;
+import team.creative.creativecore.common.util.math.base.Axis;
 import team.creative.creativecore.common.util.math.base.Facing;
 import team.creative.creativecore.common.util.math.box.BoxCorner;
 import team.creative.creativecore.common.util.math.vec.Vec3f;
@@ -37,7 +53,6 @@ import team.creative.littletiles.common.block.entity.BETiles;
 import team.creative.littletiles.common.block.little.tile.LittleTile;
 import team.creative.littletiles.common.block.little.tile.group.LittleGroup;
 import team.creative.littletiles.common.block.little.tile.parent.IParentCollection;
-import team.creative.littletiles.common.convertion.OldLittleTilesDataParser;
 import team.creative.littletiles.common.grid.LittleGrid;
 import team.creative.littletiles.common.math.box.LittleBox;
 import team.creative.littletiles.common.math.box.LittleTransformableBox;
@@ -58,8 +73,9 @@ public final class LtDebugExportCommand {
             .disableHtmlEscaping()
             .create();
     private static final boolean EXPORT_FACE_STATES = true;
+    static final int MAX_WORKERS = 64;
 
-    private enum GeometryMode {
+    enum GeometryMode {
         CLIENT("client"),
         SERVER("server");
 
@@ -79,6 +95,137 @@ public final class LtDebugExportCommand {
         }
     }
 
+    enum ReportFormat {
+        PRETTY("pretty"),
+        COMPACT("compact");
+
+        final String id;
+
+        ReportFormat(String id) {
+            this.id = id;
+        }
+
+        static ReportFormat fromArg(String raw) {
+            String value = raw == null ? "" : raw.trim().toLowerCase();
+            return switch (value) {
+                case "pretty" -> PRETTY;
+                case "compact" -> COMPACT;
+                default -> null;
+            };
+        }
+
+        /** Matches {@code GSON.toJson} output: no HTML escaping, null members omitted. */
+        JsonWriter newWriter(Writer writer) {
+            JsonWriter out = new JsonWriter(writer);
+            out.setHtmlSafe(false);
+            out.setSerializeNulls(false);
+            out.setLenient(true);
+            if (this == PRETTY)
+                out.setIndent("  ");
+            return out;
+        }
+    }
+
+    /** Where a report keeps its {@code normalizedSnbt}: inline as a JSON string, or as a gzip sidecar next to the report. */
+    enum SnbtStorage {
+        INLINE("inline"),
+        GZIP("gzip");
+
+        final String id;
+
+        SnbtStorage(String id) {
+            this.id = id;
+        }
+
+        static SnbtStorage fromArg(String raw) {
+            String value = raw == null ? "" : raw.trim().toLowerCase();
+            return switch (value) {
+                case "inline" -> INLINE;
+                case "gzip" -> GZIP;
+                default -> null;
+            };
+        }
+    }
+
+    /**
+     * Batch settings resolved from command arguments.
+     *
+     * Trailing options are {@code key=value} tokens ({@code workers=8 faceWorkers=4 format=compact snbt=gzip
+     * cache=off}); a bare integer is accepted as the worker count.
+     */
+    static final class ExportSettings {
+        final GeometryMode geometryMode;
+        final int workers;
+        final int faceWorkers;
+        final ReportFormat reportFormat;
+        final SnbtStorage snbtStorage;
+        final boolean reuseCache;
+
+        private ExportSettings(
+                GeometryMode geometryMode,
+                int workers,
+                int faceWorkers,
+                ReportFormat reportFormat,
+                SnbtStorage snbtStorage,
+                boolean reuseCache) {
+            this.geometryMode = geometryMode;
+            this.workers = workers;
+            this.faceWorkers = faceWorkers;
+            this.reportFormat = reportFormat;
+            this.snbtStorage = snbtStorage;
+            this.reuseCache = reuseCache;
+        }
+
+        static ExportSettings defaults(GeometryMode geometryMode) {
+            return new ExportSettings(geometryMode, 1, 1, ReportFormat.PRETTY, SnbtStorage.INLINE, true);
+        }
+
+        /** Everything besides the input that changes report content; worker counts do not. */
+        String cacheKey() {
+            return buildRuntimeMetadata() + "\ngeometryMode=" + geometryMode.id + "\nformat=" + reportFormat.id + "\nsnbt=" + snbtStorage.id;
+        }
+
+        static ExportSettings parse(GeometryMode geometryMode, String optionsArg) {
+            int workers = 1;
+            int faceWorkers = 1;
+            ReportFormat reportFormat = ReportFormat.PRETTY;
+            SnbtStorage snbtStorage = SnbtStorage.INLINE;
+            boolean reuseCache = true;
+            String options = optionsArg == null ? "" : optionsArg.trim();
+            for (String token : options.isEmpty() ? new String[0] : options.split("\\s+")) {
+                int equals = token.indexOf('=');
+                String key = equals < 0 ? "workers" : token.substring(0, equals).toLowerCase();
+                String value = equals < 0 ? token : token.substring(equals + 1);
+                switch (key) {
+                    case "workers" -> workers = parseWorkers("workers", value);
+                    case "faceworkers" -> faceWorkers = parseWorkers("faceWorkers", value);
+                    case "format" -> {
+                        reportFormat = ReportFormat.fromArg(value);
+                        if (reportFormat == null)
+                            throw new IllegalArgumentException("invalid format \"" + value + "\" (expected: pretty|compact)");
+                    }
+                    case "snbt" -> {
+                        snbtStorage = SnbtStorage.fromArg(value);
+                        if (snbtStorage == null)
+                            throw new IllegalArgumentException("invalid snbt \"" + value + "\" (expected: inline|gzip)");
+                    }
+                    case "cache" -> reuseCache = parseSwitch("cache", value);
+                    default -> throw new IllegalArgumentException("unknown option \"" + token + "\"");
+                }
+            }
+            return new ExportSettings(geometryMode, workers, faceWorkers, reportFormat, snbtStorage, reuseCache);
+        }
+
+        static int parseWorkers(String key, String value) {
+            try {
+                int workers = Integer.parseInt(value);
+                if (workers >= 1 && workers <= MAX_WORKERS)
+                    return workers;
+            } catch (NumberFormatException ignored) {}
+            throw new IllegalArgumentException("invalid " + key + " \"" + value + "\" (expected: 1-" + MAX_WORKERS + ")");
+        }
+    }
+
     private LtDebugExportCommand() {}
 
     public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
@@ -90,38 +237,54 @@ public final class LtDebugExportCommand {
                                         context.getSource(),
                                         StringArgumentType.getString(context, "input_dir"),
                                         StringArgumentType.getString(context, "output_dir"),
-                                        GeometryMode.CLIENT))
+                                        ExportSettings.defaults(GeometryMode.CLIENT)))
                                 .then(Commands.argument("geometry_mode", StringArgumentType.word())
-                                        .executes(context -> executeBatchWithGeometryMode(
+                                        .executes(context -> executeBatchWithOptions(
                                                 context.getSource(),
                                                 StringArgumentType.getString(context, "input_dir"),
                                                 StringArgumentType.getString(context, "output_dir"),
-                                                StringArgumentType.getString(context, "geometry_mode"))))));
+                                                StringArgumentType.getString(context, "geometry_mode"),
+                                                ""))
+                                        .then(Commands.argument("options", StringArgumentType.greedyString())
+                                                .executes(context -> executeBatchWithOptions(
+                                                        context.getSource(),
+                                                        StringArgumentType.getString(context, "input_dir"),
+                                                        StringArgumentType.getString(context, "output_dir"),
+                                                        StringArgumentType.getString(context, "geometry_mode"),
+                                                        StringArgumentType.getString(context, "options")))))));
         dispatcher.register(root);
     }
 
-    private static int executeBatchWithGeometryMode(
+    private static int executeBatchWithOptions(
             CommandSourceStack source,
             String inputDirArg,
             String outputDirArg,
-            String geometryModeArg) {
+            String geometryModeArg,
+            String optionsArg) {
         GeometryMode geometryMode = GeometryMode.fromArg(geometryModeArg);
         if (geometryMode == null) {
             source.sendFailure(Component.literal(
                     "lt-debug-export failed: invalid geometry_mode \"" + geometryModeArg + "\" (expected: client|server)"));
             return 0;
         }
-        return executeBatch(source, inputDirArg, outputDirArg, geometryMode);
+        ExportSettings settings;
+        try {
+            settings = ExportSettings.parse(geometryMode, optionsArg);
+        } catch (IllegalArgumentException e) {
+            source.sendFailure(Component.literal("lt-debug-export failed: " + e.getMessage()));
+            return 0;
+        }
+        return executeBatch(source, inputDirArg, outputDirArg, settings);
     }
 
     private static int executeBatch(
             CommandSourceStack source,
             String inputDirArg,
             String outputDirArg,
-            GeometryMode geometryMode) {
+            ExportSettings settings) {
         MinecraftServer server = source.getServer();
-        Path inputDir = resolvePath(server, inputDirArg);
-        Path outputDir = resolvePath(server, outputDirArg);
+        Path inputDir = ExportPaths.resolve(server, inputDirArg);
+        Path outputDir = ExportPaths.resolve(server, outputDirArg);
 
         try {
             if (!Files.isDirectory(inputDir)) {
@@ -143,40 +306,9 @@ public final class LtDebugExportCommand {
                 return 0;
             }
 
-            int ok = 0;
-            int failed = 0;
-            long totalTiles = 0;
-            long totalBoxes = 0;
-            List<String> failures = new ArrayList<>();
-
-            for (Path inputPath : inputFiles) {
-                Path outputPath = outputDir.resolve(toOutputFileName(inputPath.getFileName().toString()));
-                try {
-                    ProcessResult result = processSingleFile(inputPath, outputPath, geometryMode);
-                    ok++;
-                    totalTiles += result.counter.tiles;
-                    totalBoxes += result.counter.boxes;
-                } catch (Exception e) {
-                    failed++;
-                    String detail = inputPath.getFileName() + ": " + e.getMessage();
-                    failures.add(detail);
-                    LittleTilesParityExporter.LOGGER.error("lt-debug-export failed for input {}", inputPath, e);
-                }
-            }
-
-            String summary = "lt-debug-export processed " + inputFiles.size() + " files to " + outputDir +
-                    " (ok=" + ok + ", failed=" + failed + ", tiles=" + totalTiles + ", boxes=" + totalBoxes + ", faceStates=" + EXPORT_FACE_STATES +
-                    ", geometryMode=" + geometryMode.id + ")";
-            source.sendSuccess(() -> Component.literal(summary), false);
-
-            if (!failures.isEmpty()) {
-                int maxLines = Math.min(5, failures.size());
-                for (int i = 0; i < maxLines; i++)
-                    source.sendFailure(Component.literal("  - " + failures.get(i)));
-                if (failures.size() > maxLines)
-                    source.sendFailure(Component.literal("  ... and " + (failures.size() - maxLines) + " more failures"));
-            }
-            return failed == 0 ? 1 : 0;
+            ExportJobs.submit(source, "lt-debug-export", inputFiles.size(),
+                    job -> runBatch(job, inputFiles, outputDir, settings));
+            return 1;
         } catch (Exception e) {
             source.sendFailure(Component.literal("lt-debug-export batch failed: " + e.getMessage()));
             LittleTilesParityExporter.LOGGER.error("lt-debug-export batch failed for inputDir {}", inputDir, e);
@@ -184,54 +316,300 @@ public final class LtDebugExportCommand {
         }
     }
 
-    private static ProcessResult processSingleFile(Path inputPath, Path outputPath, GeometryMode geometryMode) throws Exception {
-        String rawSnbt = Files.readString(inputPath, StandardCharsets.UTF_8);
-        CompoundTag parsedTag = TagParser.parseTag(rawSnbt);
+    static void runBatch(
+            ExportJobs.Job job,
+            List<Path> inputFiles,
+            Path outputDir,
+            ExportSettings settings) throws Exception {
+        int ok = 0;
+        int failed = 0;
+        int cancelled = 0;
+        long totalTiles = 0;
+        long totalBoxes = 0;
+        List<String> failures = new ArrayList<>();
+        ExportTimings.Rollup timings = new ExportTimings.Rollup();
+        ExportCache cache = ExportCache.open(outputDir, "lt-debug-export", settings.cacheKey(), settings.reuseCache);
+
+        List<ExportWorkers.Outcome<ProcessResult>> outcomes;
+        ForkJoinPool facePool = settings.faceWorkers > 1 ? new ForkJoinPool(settings.faceWorkers) : null;
+        try {
+            outcomes = ExportWorkers.run(job, "lt-debug-export", inputFiles, settings.workers,
+                    inputPath -> processFile(inputPath, outputDir, settings, cache, facePool));
+        } finally {
+            if (facePool != null)
+                facePool.shutdownNow();
+            saveCache(cache, outputDir);
+        }
+        for (ExportWorkers.Outcome<ProcessResult> outcome : outcomes) {
+            if (outcome.result() != null) {
+                ok++;
+                totalTiles += outcome.result().counter.tiles;
+                totalBoxes += outcome.result().counter.boxes;
+                if (outcome.result().timings != null)
+                    timings.record(outcome.inputPath().getFileName().toString(), outcome.result().timings);
+            } else if (outcome.error() != null) {
+                failed++;
+                failures.add(outcome.inputPath().getFileName() + ": " + outcome.error().getMessage());
+            } else {
+                cancelled++;
+            }
+        }
+
+        String summary = "lt-debug-export processed " + (inputFiles.size() - cancelled) + " files to " + outputDir +
+                " (ok=" + ok + ", failed=" + failed + ", tiles=" + totalTiles + ", boxes=" + totalBoxes + ", faceStates=" + EXPORT_FACE_STATES +
+                ", geometryMode=" + settings.geometryMode.id + ", workers=" + Math.min(settings.workers, inputFiles.size()) +
+                ", faceWorkers=" + settings.faceWorkers + ", format=" + settings.reportFormat.id + ", snbt=" + settings.snbtStorage.id +
+                (cancelled > 0 ? ", cancelled=" + cancelled : "") + ")";
+        job.sendSuccess(summary);
+        job.sendSuccess("  " + cache.describe());
+        if (!timings.isEmpty()) {
+            job.sendSuccess("  " + timings.describeFiles());
+            job.sendSuccess("  " + timings.describePhases());
+        }
+
+        if (!failures.isEmpty()) {
+            int maxLines = Math.min(5, failures.size());
+            for (int i = 0; i < maxLines; i++)
+                job.sendFailure("  - " + failures.get(i));
+            if (failures.size() > maxLines)
+                job.sendFailure("  ... and " + (failures.size() - maxLines) + " more failures");
+        }
+    }
+
+    private static ProcessResult processFile(
+            Path inputPath,
+            Path outputDir,
+            ExportSettings settings,
+            ExportCache cache,
+            ForkJoinPool facePool) throws Exception {
+        Path outputPath = outputDir.resolve(toOutputFileName(inputPath.getFileName().toString()));
+        ExportCache.Probe probe = cache.probe(inputPath);
+        if (probe.hit())
+            return new ProcessResult(Counter.fromJson(probe.stats()), null);
+        ProcessResult result = processSingleFile(inputPath, outputPath, settings, facePool);
+        List<Path> outputs = settings.snbtStorage == SnbtStorage.GZIP
+                ? List.of(outputPath, toSidecarPath(outputPath))
+                : List.of(outputPath);
+        cache.record(probe, outputs, result.counter.toJson());
+        return result;
+    }
+
+    /** Parses an {@code on|off} (or {@code true|false}) option value. */
+    static boolean parseSwitch(String key, String value) {
+        return switch (value.toLowerCase()) {
+            case "on", "true" -> true;
+            case "off", "false" -> false;
+            default -> throw new IllegalArgumentException("invalid " + key + " \"" + value + "\" (expected: on|off)");
+        };
+    }
 
-        boolean legacy = OldLittleTilesDataParser.isOld(parsedTag);
-        CompoundTag normalizedTag = legacy
-                ? OldLittleTilesDataParser.convert(parsedTag.copy())
-                : parsedTag.copy();
+    /** A manifest that fails to save only costs the next run its cache hits, so it does not fail the batch. */
+    static void saveCache(ExportCache cache, Path outputDir) {
+        try {
+            cache.save();
+        } catch (IOException e) {
+            LittleTilesParityExporter.LOGGER.warn("failed to save export cache manifest in {}", outputDir, e);
+        }
+    }
 
-        LittleGroup root = LittleGroup.load(normalizedTag);
+    private static ProcessResult processSingleFile(
+            Path inputPath,
+            Path outputPath,
+            ExportSettings settings,
+            ForkJoinPool facePool) throws Exception {
+        ExportTimings timings = new ExportTimings();
+        return writeReport(LoadedInput.load(inputPath, timings), outputPath, settings, facePool, timings);
+    }
 
+    /**
+     * Evaluates faces and streams the debug report for an already loaded input. Phases are lapped onto
+     * {@code timings}, and the report's {@code timings} object holds everything charged to it so far.
+     */
+    static ProcessResult writeReport(
+            LoadedInput input,
+            Path outputPath,
+            ExportSettings settings,
+            ForkJoinPool facePool,
+            ExportTimings timings) throws IOException {
+        Files.createDirectories(outputPath.getParent());
+        // Stream into sibling temp files so a failing file never leaves a truncated report behind, and move the
+        // sidecar over the old one only once the report that carries its hash is in place.
+        Path tempPath = outputPath.resolveSibling(outputPath.getFileName() + ".tmp");
+        SnbtSidecar sidecar = null;
+        Counter counter;
+        try {
+            if (settings.snbtStorage == SnbtStorage.GZIP) {
+                sidecar = SnbtSidecar.stage(input.normalizedTag().toString(), toSidecarPath(outputPath));
+                timings.lap(ExportTimings.SNBT_SIDECAR);
+            }
+            try (Writer fileWriter = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+                counter = streamReport(input, outputPath.toString(), settings, sidecar, facePool, timings, fileWriter);
+            }
+            Files.move(tempPath, outputPath, StandardCopyOption.REPLACE_EXISTING);
+            if (sidecar != null)
+                sidecar.commit();
+            timings.lap(ExportTimings.WRITE);
+        } finally {
+            Files.deleteIfExists(tempPath);
+            if (sidecar != null)
+                sidecar.discard();
+        }
+        return new ProcessResult(counter, timings);
+    }
+
+    /**
+     * Evaluates faces and streams the report JSON, followed by a line separator, to {@code writer}. The SNBT is
+     * referenced from {@code sidecar} when one was written, otherwise inlined.
+     */
+    static Counter streamReport(
+            LoadedInput input,
+            String outputPath,
+            ExportSettings settings,
+            SnbtSidecar sidecar,
+            ForkJoinPool facePool,
+            ExportTimings timings,
+            Writer writer) throws IOException {
+        LittleGroup root = input.root();
         Counter counter = new Counter();
+        OccluderIndex occluders = new OccluderIndex(collectTileContexts(root));
+        timings.lap(ExportTimings.OCCLUDER_INDEX);
+        // With a face pool, faces are evaluated in parallel one window ahead of the writer, which takes them in order.
+        ParallelFaceEvaluations precomputed = facePool != null
+                ? ParallelFaceEvaluations.start(root, occluders, settings.geometryMode, facePool, timings)
+                : null;
+        FaceStateSummary faceSummary = precomputed != null ? precomputed.summaries.faceSummary : new FaceStateSummary();
+        TransformableDiagnosticsSummary transformableDiagnostics = precomputed != null
+                ? precomputed.summaries.transformableDiagnostics
+                : new TransformableDiagnosticsSummary();
+
+        JsonWriter out = settings.reportFormat.newWriter(writer);
+        out.beginObject();
+        out.name("generatedAt").value(Instant.now().toString());
+        out.name("schema").value(input.legacy() ? "legacy" : "current");
+        out.name("inputPath").value(input.inputPath().toString());
+        out.name("outputPath").value(outputPath);
+        if (sidecar != null) {
+            out.name("normalizedSnbtRef");
+            sidecar.write(out);
+        } else {
+            out.name("normalizedSnbt").value(input.normalizedTag().toString());
+        }
+        out.name("outsideNeighborPolicy").value("air");
+        out.name("withFaceStates").value(EXPORT_FACE_STATES);
+        out.name("geometryMode").value(settings.geometryMode.id);
+        out.name("runtime");
+        writeElement(out, buildRuntimeMetadata());
+
+        out.name("root");
+        // Without a face pool, faces are evaluated on this thread with one query scratch for the whole file.
+        OccluderIndex.QueryScratch scratch = precomputed == null ? occluders.newScratch() : null;
+        writeGroup(out, root, "root", counter, timings, occluders, scratch, precomputed, faceSummary, transformableDiagnostics, settings.geometryMode);
+
+        out.name("stats").beginObject();
+        out.name("groups").value(counter.groups);
+        out.name("tiles").value(counter.tiles);
+        out.name("boxes").value(counter.boxes);
+        out.name("transformableBoxes").value(counter.transformableBoxes);
+        out.name("facesEvaluated").value(faceSummary.totalFaces);
+        out.name("renderableFaces").value(faceSummary.renderableFaces);
+        out.name("occluderEligibility");
+        writeElement(out, occluders.eligibility.toJson());
+        out.endObject();
+
+        out.name("faceStateSummary");
+        writeElement(out, faceSummary.toJson());
+        out.name("transformableDiagnosticsSummary");
+        writeElement(out, transformableDiagnostics.toJson());
+        timings.lap(ExportTimings.ENCODE);
+        out.name("timings");
+        timings.write(out);
+        out.endObject();
+        out.flush();
+        writer.write(System.lineSeparator());
+        writer.flush();
+        return counter;
+    }
+
+    /** Stage entry point for the JMH harness: evaluates every face of {@code root}, returns the renderable count. */
+    static int evaluateFaces(LittleGroup root, GeometryMode geometryMode) {
+        OccluderIndex occluders = new OccluderIndex(collectTileContexts(root));
+        OccluderIndex.QueryScratch scratch = occluders.newScratch();
         FaceStateSummary faceSummary = new FaceStateSummary();
         TransformableDiagnosticsSummary transformableDiagnostics = new TransformableDiagnosticsSummary();
-        List<TileContext> allTiles = collectTileContexts(root);
-
-        JsonObject report = new JsonObject();
-        report.addProperty("generatedAt", Instant.now().toString());
-        report.addProperty("schema", legacy ? "legacy" : "current");
-        report.addProperty("inputPath", inputPath.toString());
-        report.addProperty("outputPath", outputPath.toString());
-        report.addProperty("normalizedSnbt", normalizedTag.toString());
-        report.addProperty("outsideNeighborPolicy", "air");
-        report.addProperty("withFaceStates", EXPORT_FACE_STATES);
-        report.addProperty("geometryMode", geometryMode.id);
-        report.add("runtime", buildRuntimeMetadata());
-
-        JsonObject rootJson = encodeGroup(root, "root", counter, allTiles, faceSummary, transformableDiagnostics, geometryMode);
-        report.add("root", rootJson);
-
-        JsonObject statsJson = new JsonObject();
-        statsJson.addProperty("groups", counter.groups);
-        statsJson.addProperty("tiles", counter.tiles);
-        statsJson.addProperty("boxes", counter.boxes);
-        statsJson.addProperty("transformableBoxes", counter.transformableBoxes);
-        statsJson.addProperty("facesEvaluated", faceSummary.totalFaces);
-        statsJson.addProperty("renderableFaces", faceSummary.renderableFaces);
-        report.add("stats", statsJson);
-
-        report.add("faceStateSummary", faceSummary.toJson());
-        report.add("transformableDiagnosticsSummary", transformableDiagnostics.toJson());
+        for (BoxRef ref : collectBoxRefs(root))
+            evaluateBoxFaces(
+                    ref.groupPath,
+                    ref.tileIndex,
+                    ref.boxIndex,
+                    ref.rendered,
+                    ref.box,
+                    occluders,
+                    scratch,
+                    faceSummary,
+                    transformableDiagnostics,
+                    geometryMode);
+        return faceSummary.renderableFaces;
+    }
 
-        Files.createDirectories(outputPath.getParent());
-        Files.writeString(outputPath, GSON.toJson(report) + System.lineSeparator(), StandardCharsets.UTF_8);
-        return new ProcessResult(counter);
+    /** Stage entry point for the JMH harness: evaluates and streams the group tree of {@code root}. */
+    static void writeGroupTree(LittleGroup root, GeometryMode geometryMode, ReportFormat reportFormat, Writer writer) throws IOException {
+        OccluderIndex occluders = new OccluderIndex(collectTileContexts(root));
+        JsonWriter out = reportFormat.newWriter(writer);
+        writeGroup(
+                out,
+                root,
+                "root",
+                new Counter(),
+                new ExportTimings(),
+                occluders,
+                occluders.newScratch(),
+                null,
+                new FaceStateSummary(),
+                new TransformableDiagnosticsSummary(),
+                geometryMode);
+        out.flush();
+    }
+
+    /** Receives renderable faces in report order, for exporters that build geometry from face states. */
+    @FunctionalInterface
+    interface RenderableFaceSink {
+        void accept(LittleTile tile, LittleGrid grid, LittleBox box, Facing facing);
+    }
+
+    /**
+     * Evaluates every face of {@code root} exactly like the debug report does and hands the
+     * renderable ones to {@code sink}. Returns the number of faces evaluated.
+     */
+    static int forEachRenderableFace(LittleGroup root, GeometryMode geometryMode, RenderableFaceSink sink) {
+        OccluderIndex occluders = new OccluderIndex(collectTileContexts(root));
+        OccluderIndex.QueryScratch scratch = occluders.newScratch();
+        FaceStateSummary faceSummary = new FaceStateSummary();
+        TransformableDiagnosticsSummary transformableDiagnostics = new TransformableDiagnosticsSummary();
+        for (BoxRef ref : collectBoxRefs(root)) {
+            FaceEvaluation[] evaluations = evaluateBoxFaces(
+                    ref.groupPath,
+                    ref.tileIndex,
+                    ref.boxIndex,
+                    ref.rendered,
+                    ref.box,
+                    occluders,
+                    scratch,
+                    faceSummary,
+                    transformableDiagnostics,
+                    geometryMode);
+            for (FaceEvaluation evaluation : evaluations)
+                if (evaluation.renderable())
+                    sink.accept(ref.rendered.tile, ref.rendered.parent.getGrid(), ref.box, evaluation.facing);
+        }
+        return faceSummary.totalFaces;
     }
 
-    private static JsonObject buildRuntimeMetadata() {
+    /** Writes a small, bounded tree (runtime metadata, summaries) at the writer's current position. */
+    private static void writeElement(JsonWriter out, JsonElement element) {
+        GSON.toJson(element, out);
+    }
+
+    static JsonObject buildRuntimeMetadata() {
         JsonObject out = new JsonObject();
         out.addProperty("minecraftVersion", detectMinecraftVersion());
         out.addProperty("littleTilesVersion", detectLoadedModVersion("littletiles"));
@@ -259,37 +637,41 @@ public final class LtDebugExportCommand {
         }
     }
 
-    private static JsonObject encodeGroup(
+    private static void writeGroup(
+            JsonWriter out,
             LittleGroup group,
             String path,
             Counter counter,
-            List<TileContext> allTiles,
+            ExportTimings timings,
+            OccluderIndex occluders,
+            OccluderIndex.QueryScratch scratch,
+            ParallelFaceEvaluations precomputed,
             FaceStateSummary faceSummary,
             TransformableDiagnosticsSummary transformableDiagnostics,
-            GeometryMode geometryMode) {
+            GeometryMode geometryMode) throws IOException {
         counter.groups++;
 
-        JsonObject out = new JsonObject();
-        out.addProperty("path", path);
-        out.addProperty("grid", group.getGrid().count);
-        out.addProperty("structureId", group.getStructureId());
-        out.addProperty("structureName", group.getStructureName());
+        out.beginObject();
+        out.name("path").value(path);
+        out.name("grid").value(group.getGrid().count);
+        out.name("structureId").value(group.getStructureId());
+        out.name("structureName").value(group.getStructureName());
 
         DebugParentCollection parent = new DebugParentCollection(group);
 
-        JsonArray tiles = new JsonArray();
+        out.name("tiles").beginArray();
         int tileIndex = 0;
         for (LittleTile tile : group) {
             counter.tiles++;
             int currentTileIndex = tileIndex++;
             TileContext rendered = new TileContext(parent, tile);
 
-            JsonObject tileJson = new JsonObject();
-            tileJson.addProperty("index", currentTileIndex);
-            tileJson.addProperty("blockState", tile.getBlockName());
-            tileJson.addProperty("color", tile.color);
+            out.beginObject();
+            out.name("index").value(currentTileIndex);
+            out.name("blockState").value(tile.getBlockName());
+            out.name("color").value(tile.color);
 
-            JsonArray boxes = new JsonArray();
+            out.name("boxes").beginArray();
             int boxIndex = 0;
             for (LittleBox box : tile) {
                 counter.boxes++;
@@ -298,63 +680,85 @@ public final class LtDebugExportCommand {
                     counter.transformableBoxes++;
                 int currentBoxIndex = boxIndex++;
 
-                JsonObject boxJson = new JsonObject();
-                boxJson.addProperty("index", currentBoxIndex);
-                boxJson.addProperty("kind", transformable ? "transformable" : "aabb");
-                boxJson.addProperty("minX", box.minX);
-                boxJson.addProperty("minY", box.minY);
-                boxJson.addProperty("minZ", box.minZ);
-                boxJson.addProperty("maxX", box.maxX);
-                boxJson.addProperty("maxY", box.maxY);
-                boxJson.addProperty("maxZ", box.maxZ);
-                boxJson.add("array", toIntArrayJson(box.getArray()));
-                if (transformable)
-                    boxJson.add("transformPayload", encodeTransformPayloadDiagnostics((LittleTransformableBox) box));
-
-                boxJson.add("faceStates", encodeFaceStates(
-                        path,
-                        currentTileIndex,
-                        currentBoxIndex,
-                        rendered,
-                        box,
-                        allTiles,
-                        faceSummary,
-                        transformableDiagnostics,
-                        geometryMode));
-
-                boxes.add(boxJson);
+                out.beginObject();
+                out.name("index").value(currentBoxIndex);
+                out.name("kind").value(transformable ? "transformable" : "aabb");
+                out.name("minX").value(box.minX);
+                out.name("minY").value(box.minY);
+                out.name("minZ").value(box.minZ);
+                out.name("maxX").value(box.maxX);
+                out.name("maxY").value(box.maxY);
+                out.name("maxZ").value(box.maxZ);
+                out.name("array");
+                writeIntArray(out, box.getArray());
+                if (transformable) {
+                    out.name("transformPayload");
+                    writeElement(out, encodeTransformPayloadDiagnostics((LittleTransformableBox) box));
+                }
+
+                FaceEvaluation[] evaluations;
+                if (precomputed != null)
+                    evaluations = precomputed.next();
+                else {
+                    // Evaluation is interleaved with encoding here; keep it out of the encode phase.
+                    long started = System.nanoTime();
+                    evaluations = evaluateBoxFaces(
+                            path,
+                            currentTileIndex,
+                            currentBoxIndex,
+                            rendered,
+                            box,
+                            occluders,
+                            scratch,
+                            faceSummary,
+                            transformableDiagnostics,
+                            geometryMode);
+                    long elapsed = System.nanoTime() - started;
+                    timings.add(ExportTimings.FACE_EVALUATION, elapsed);
+                    timings.exclude(elapsed);
+                }
+                out.name("faceStates").beginArray();
+                for (FaceEvaluation evaluation : evaluations)
+                    evaluation.write(out);
+                out.endArray();
+
+                out.endObject();
             }
-            tileJson.add("boxes", boxes);
-            tiles.add(tileJson);
+            out.endArray();
+            out.endObject();
         }
-        out.add("tiles", tiles);
+        out.endArray();
 
-        JsonArray children = new JsonArray();
+        out.name("children").beginArray();
         int childIndex = 0;
         for (LittleGroup child : group.children.all()) {
             String childPath = path + ".children[" + childIndex + "]";
-            children.add(encodeGroup(child, childPath, counter, allTiles, faceSummary, transformableDiagnostics, geometryMode));
+            writeGroup(out, child, childPath, counter, timings, occluders, scratch, precomputed, faceSummary, transformableDiagnostics, geometryMode);
             childIndex++;
         }
-        out.add("children", children);
-        return out;
+        out.endArray();
+        out.endObject();
     }
 
-    private static JsonArray encodeFaceStates(
+    private static FaceEvaluation[] evaluateBoxFaces(
             String groupPath,
             int tileIndex,
             int boxIndex,
             TileContext rendered,
             LittleBox renderedBox,
-            List<TileContext> allTiles,
+            OccluderIndex occluders,
+            OccluderIndex.QueryScratch scratch,
             FaceStateSummary summary,
             TransformableDiagnosticsSummary transformableDiagnostics,
             GeometryMode geometryMode) {
-        JsonArray out = new JsonArray();
+        FaceEvaluation[] out = new FaceEvaluation[Facing.VALUES.length];
         LittleServerFace workingFace = new LittleServerFace(null);
+        TransformableBoxDiagnostics boxDiagnostics = renderedBox instanceof LittleTransformableBox transformable
+                ? new TransformableBoxDiagnostics(rendered, transformable)
+                : null;
         for (Facing facing : Facing.VALUES) {
-            FaceEvaluation evaluation = evaluateFace(rendered, renderedBox, facing, allTiles, workingFace, geometryMode);
-            out.add(evaluation.toJson());
+            FaceEvaluation evaluation = evaluateFace(rendered, renderedBox, facing, occluders, scratch, workingFace, boxDiagnostics, geometryMode);
+            out[facing.ordinal()] = evaluation;
             summary.record(evaluation);
             transformableDiagnostics.record(groupPath, tileIndex, boxIndex, evaluation);
         }
@@ -365,10 +769,12 @@ public final class LtDebugExportCommand {
             TileContext rendered,
             LittleBox renderedBox,
             Facing facing,
-            List<TileContext> allTiles,
+            OccluderIndex occluders,
+            OccluderIndex.QueryScratch scratch,
             LittleServerFace workingFace,
+            TransformableBoxDiagnostics boxDiagnostics,
             GeometryMode geometryMode) {
-        TransformableFaceCacheDebug transformableCache = snapshotTransformableFaceCache(rendered, renderedBox, facing);
+        TransformableFaceCacheDebug transformableCache = boxDiagnostics != null ? boxDiagnostics.forFacing(facing) : null;
         boolean generateFaceCurrentNull = transformableCache != null
                 ? transformableCache.generateFaceCurrentNull
                 : renderedBox.generateFace(rendered.parent.getGrid(), facing) == null;
@@ -396,28 +802,27 @@ public final class LtDebugExportCommand {
         }
 
         FaceEvaluation evaluation = FaceEvaluation.inside(facing, workingFace, transformableCache);
-        for (TileContext candidate : allTiles) {
-            evaluation.evaluatedTiles++;
-
-            if (candidate.parent.isStructure() && LittleStructureAttribute.noCollision(candidate.parent.getAttribute())) {
-                evaluation.skippedNoCollisionStructureTiles++;
-                continue;
-            }
-
-            boolean providesSolidFace = candidate.tile.doesProvideSolidFace();
-            boolean renderCombined = candidate.tile.canBeRenderCombined(rendered.tile);
-            if (!(providesSolidFace || renderCombined)) {
-                evaluation.skippedIneligibleTiles++;
+        // Eligibility counters cover every tile of the file, exactly like the original full scan.
+        // Only tiles whose boxes can reach the face plane are actually asked to fill the face.
+        OccluderEligibility eligibility = occluders.eligibility;
+        int renderedMaterial = eligibility.materialOf(rendered.tile);
+        OccluderCounts counts = eligibility.countsFor(renderedMaterial);
+        evaluation.evaluatedTiles = counts.evaluatedTiles;
+        evaluation.eligibleTiles = counts.eligibleSolidFaceTiles + counts.eligibleRenderCombinedOnlyTiles;
+        evaluation.eligibleSolidFaceTiles = counts.eligibleSolidFaceTiles;
+        evaluation.eligibleRenderCombinedOnlyTiles = counts.eligibleRenderCombinedOnlyTiles;
+        evaluation.skippedNoCollisionStructureTiles = counts.skippedNoCollisionStructureTiles;
+        evaluation.skippedIneligibleTiles = counts.skippedIneligibleTiles;
+
+        int[] candidates = occluders.candidates(rendered, renderedBox, facing, scratch);
+        evaluation.queriedCandidates = true;
+        evaluation.candidateTilesScanned = candidates.length;
+        for (int candidateIndex : candidates) {
+            if (!eligibility.isEligible(candidateIndex, renderedMaterial))
                 continue;
-            }
-
-            evaluation.eligibleTiles++;
-            if (providesSolidFace)
-                evaluation.eligibleSolidFaceTiles++;
-            else
-                evaluation.eligibleRenderCombinedOnlyTiles++;
-
+            TileContext candidate = occluders.tiles.get(candidateIndex);
             candidate.tile.fillFace(candidate.parent, workingFace, candidate.parent.getGrid());
+            evaluation.candidateTilesFilled++;
         }
 
         evaluation.filledCells = countFilledCells(workingFace.filled);
@@ -434,6 +839,10 @@ public final class LtDebugExportCommand {
         return evaluation;
     }
 
+    private static boolean isNoCollisionStructureTile(TileContext candidate) {
+        return candidate.parent.isStructure() && LittleStructureAttribute.noCollision(candidate.parent.getAttribute());
+    }
+
     private static FaceEvaluation evaluateClientTiltedOnlyFace(
             TileContext rendered,
             LittleBox renderedBox,
@@ -478,29 +887,6 @@ public final class LtDebugExportCommand {
         return !(origin > 0 && origin < grid.count);
     }
 
-    private static TransformableFaceCacheDebug snapshotTransformableFaceCache(TileContext rendered, LittleBox box, Facing facing) {
-        if (!(box instanceof LittleTransformableBox transformable))
-            return null;
-
-        TransformableFaceCacheSnapshot current = snapshotTransformableFaceCacheState(transformable, facing);
-        LittleTransformableBox freshCopy = transformable.copy();
-        freshCopy.requestCache();
-        TransformableFaceCacheSnapshot fresh = snapshotTransformableFaceCacheState(freshCopy, facing);
-
-        boolean generateFaceCurrentNull = transformable.generateFace(rendered.parent.getGrid(), facing) == null;
-        boolean generateFaceFreshNull = freshCopy.generateFace(rendered.parent.getGrid(), facing) == null;
-        boolean setCurrentResult = probeSetResult(rendered, transformable, facing);
-        boolean setFreshResult = probeSetResult(rendered, freshCopy, facing);
-
-        return new TransformableFaceCacheDebug(
-                current,
-                fresh,
-                generateFaceCurrentNull,
-                generateFaceFreshNull,
-                setCurrentResult,
-                setFreshResult);
-    }
-
     private static TransformableFaceCacheSnapshot snapshotTransformableFaceCacheState(
             LittleTransformableBox transformable,
             Facing facing) {
@@ -523,8 +909,7 @@ public final class LtDebugExportCommand {
                 faceCache.isCompletelyFilled());
     }
 
-    private static boolean probeSetResult(TileContext rendered, LittleBox box, Facing facing) {
-        LittleServerFace probeFace = new LittleServerFace(null);
+    private static boolean probeSetResult(TileContext rendered, LittleBox box, Facing facing, LittleServerFace probeFace) {
         probeFace.set(rendered.parent, rendered.tile, box, facing);
         return box.set(probeFace, rendered.parent.getGrid(), facing);
     }
@@ -623,6 +1008,29 @@ public final class LtDebugExportCommand {
             collectTileContexts(child, out);
     }
 
+    /** Enumerates boxes in report order (tiles, then boxes, then child groups). */
+    private static List<BoxRef> collectBoxRefs(LittleGroup root) {
+        List<BoxRef> out = new ArrayList<>();
+        collectBoxRefs(root, "root", out);
+        return out;
+    }
+
+    private static void collectBoxRefs(LittleGroup group, String path, List<BoxRef> out) {
+        DebugParentCollection parent = new DebugParentCollection(group);
+        int tileIndex = 0;
+        for (LittleTile tile : group) {
+            TileContext rendered = new TileContext(parent, tile);
+            int boxIndex = 0;
+            for (LittleBox box : tile)
+                out.add(new BoxRef(path, tileIndex, boxIndex++, rendered, box));
+            tileIndex++;
+        }
+
+        int childIndex = 0;
+        for (LittleGroup child : group.children.all())
+            collectBoxRefs(child, path + ".children[" + childIndex++ + "]", out);
+    }
+
     private static int countFilledCells(boolean[][] filled) {
         if (filled == null || filled.length == 0)
             return 0;
@@ -634,26 +1042,74 @@ public final class LtDebugExportCommand {
         return out;
     }
 
-    private static JsonArray toIntArrayJson(int[] values) {
-        JsonArray out = new JsonArray();
+    private static void writeIntArray(JsonWriter out, int[] values) throws IOException {
+        out.beginArray();
         for (int value : values)
-            out.add(value);
-        return out;
+            out.value(value);
+        out.endArray();
+    }
+
+    static String toOutputFileName(String inputFileName) {
+        return ExportPaths.baseName(inputFileName) + ".json";
     }
 
-    private static Path resolvePath(MinecraftServer server, String raw) {
-        Path path = Path.of(raw);
-        if (path.isAbsolute())
-            return path.normalize();
-        return server.getFile(raw).normalize();
+    /** Sidecar path for a report: {@code <basename>.snbt.gz} next to {@code <basename>.json}. */
+    static Path toSidecarPath(Path outputPath) {
+        String name = outputPath.getFileName().toString();
+        String base = name.endsWith(".json") ? name.substring(0, name.length() - ".json".length()) : name;
+        return outputPath.resolveSibling(base + ".snbt.gz");
     }
 
-    private static String toOutputFileName(String inputFileName) {
-        int dot = inputFileName.lastIndexOf('.');
-        String base = dot > 0 ? inputFileName.substring(0, dot) : inputFileName;
-        if (base.isBlank())
-            base = inputFileName;
-        return base + ".json";
+    /**
+     * Normalized SNBT stored as a gzip file next to its report.
+     *
+     * The report keeps the sidecar's path relative to the report directory, the SHA-256 of the uncompressed UTF-8
+     * text (so tooling can verify what it decompressed) and the compressed size. The sidecar is staged in a temp
+     * file and only replaces the previous one through {@link #commit()}.
+     */
+    private record SnbtSidecar(Path path, Path tempPath, String relativePath, String sha256, long compressedBytes) {
+
+        static SnbtSidecar stage(String snbt, Path sidecarPath) throws IOException {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+            Path tempPath = sidecarPath.resolveSibling(sidecarPath.getFileName() + ".tmp");
+            try (Writer writer = new OutputStreamWriter(
+                    new DigestOutputStream(new GZIPOutputStream(Files.newOutputStream(tempPath), 64 * 1024), digest),
+                    StandardCharsets.UTF_8)) {
+                writer.write(snbt);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(tempPath);
+                throw e;
+            }
+            return new SnbtSidecar(
+                    sidecarPath,
+                    tempPath,
+                    sidecarPath.getFileName().toString(),
+                    HexFormat.of().formatHex(digest.digest()),
+                    Files.size(tempPath));
+        }
+
+        void commit() throws IOException {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        /** Deletes the staged file if it was not committed. */
+        void discard() throws IOException {
+            Files.deleteIfExists(tempPath);
+        }
+
+        void write(JsonWriter out) throws IOException {
+            out.beginObject();
+            out.name("path").value(relativePath);
+            out.name("encoding").value("gzip");
+            out.name("sha256").value(sha256);
+            out.name("compressedBytes").value(compressedBytes);
+            out.endObject();
+        }
     }
 
     private static final class TileContext {
@@ -666,6 +1122,483 @@ public final class LtDebugExportCommand {
         }
     }
 
+    private static final class OccluderCounts {
+        int evaluatedTiles;
+        int eligibleSolidFaceTiles;
+        int eligibleRenderCombinedOnlyTiles;
+        int skippedNoCollisionStructureTiles;
+        int skippedIneligibleTiles;
+    }
+
+    /**
+     * Per-file lookup of occluder candidates for inside faces.
+     *
+     * Tiles are bucketed by the block cells their boxes overlap, so a face only visits tiles
+     * whose bounding boxes touch its plane instead of every tile in the file. Bounds are kept in
+     * block units because child groups may use a different grid than the rendered tile.
+     * Candidates are returned in collection order to keep fill order identical to a full scan.
+     */
+    private static final class OccluderIndex {
+        // Boxes spanning more cells than this are not bucketed and are returned for every query.
+        private static final int MAX_CELLS_PER_BOX = 512;
+        private static final double EPSILON = 1.0E-9;
+
+        final List<TileContext> tiles;
+        private final List<List<double[]>> boxBoundsByTile = new ArrayList<>();
+        private final Map<Long, List<Integer>> cells = new HashMap<>();
+        private final List<Integer> unbucketed = new ArrayList<>();
+        final OccluderEligibility eligibility;
+
+        OccluderIndex(List<TileContext> tiles) {
+            this.tiles = tiles;
+            this.eligibility = new OccluderEligibility(tiles);
+            for (int index = 0; index < tiles.size(); index++) {
+                TileContext context = tiles.get(index);
+                double scale = context.parent.getGrid().count;
+                List<double[]> boxBounds = new ArrayList<>();
+                for (LittleBox box : context.tile) {
+                    double[] bounds = toBlockBounds(box, scale);
+                    boxBounds.add(bounds);
+                    insert(index, bounds);
+                }
+                boxBoundsByTile.add(boxBounds);
+            }
+        }
+
+        private void insert(int tileIndex, double[] bounds) {
+            int minX = (int) Math.floor(bounds[0]), maxX = (int) Math.floor(bounds[3]);
+            int minY = (int) Math.floor(bounds[1]), maxY = (int) Math.floor(bounds[4]);
+            int minZ = (int) Math.floor(bounds[2]), maxZ = (int) Math.floor(bounds[5]);
+            long cellCount = (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+            if (cellCount > MAX_CELLS_PER_BOX) {
+                if (unbucketed.isEmpty() || unbucketed.get(unbucketed.size() - 1) != tileIndex)
+                    unbucketed.add(tileIndex);
+                return;
+            }
+            for (int x = minX; x <= maxX; x++)
+                for (int y = minY; y <= maxY; y++)
+                    for (int z = minZ; z <= maxZ; z++) {
+                        List<Integer> bucket = cells.computeIfAbsent(cellKey(x, y, z), ignored -> new ArrayList<>());
+                        if (bucket.isEmpty() || bucket.get(bucket.size() - 1) != tileIndex)
+                            bucket.add(tileIndex);
+                    }
+        }
+
+        /**
+         * Query state for {@link #candidates}. Each evaluating thread passes its own, so parallel face evaluation
+         * can share one index; nothing outlives the evaluation that created it.
+         */
+        QueryScratch newScratch() {
+            return new QueryScratch(tiles.size());
+        }
+
+        /** Returns indexes of tiles with at least one box whose bounds touch the face rectangle of {@code box}. */
+        int[] candidates(TileContext rendered, LittleBox box, Facing facing, QueryScratch scratch) {
+            double scale = rendered.parent.getGrid().count;
+            double[] query = toBlockBounds(box, scale);
+            int axis = facing.axis.ordinal();
+            double origin = (facing.positive ? box.getMax(facing.axis) : box.getMin(facing.axis)) / scale;
+            query[axis] = origin;
+            query[axis + 3] = origin;
+
+            int[] visitedStamp = scratch.visitedStamp;
+            int stamp = ++scratch.stamp;
+            int[] matches = new int[8];
+            int matchCount = 0;
+            int minX = (int) Math.floor(query[0] - EPSILON), maxX = (int) Math.floor(query[3] + EPSILON);
+            int minY = (int) Math.floor(query[1] - EPSILON), maxY = (int) Math.floor(query[4] + EPSILON);
+            int minZ = (int) Math.floor(query[2] - EPSILON), maxZ = (int) Math.floor(query[5] + EPSILON);
+            for (int x = minX; x <= maxX; x++)
+                for (int y = minY; y <= maxY; y++)
+                    for (int z = minZ; z <= maxZ; z++) {
+                        List<Integer> bucket = cells.get(cellKey(x, y, z));
+                        if (bucket == null)
+                            continue;
+                        for (int tileIndex : bucket) {
+                            if (visitedStamp[tileIndex] == stamp)
+                                continue;
+                            visitedStamp[tileIndex] = stamp;
+                            if (!touches(tileIndex, query))
+                                continue;
+                            if (matchCount == matches.length)
+                                matches = Arrays.copyOf(matches, matchCount * 2);
+                            matches[matchCount++] = tileIndex;
+                        }
+                    }
+            for (int tileIndex : unbucketed) {
+                if (visitedStamp[tileIndex] == stamp)
+                    continue;
+                visitedStamp[tileIndex] = stamp;
+                if (!touches(tileIndex, query))
+                    continue;
+                if (matchCount == matches.length)
+                    matches = Arrays.copyOf(matches, matchCount * 2);
+                matches[matchCount++] = tileIndex;
+            }
+
+            int[] out = Arrays.copyOf(matches, matchCount);
+            Arrays.sort(out);
+            return out;
+        }
+
+        private boolean touches(int tileIndex, double[] query) {
+            for (double[] bounds : boxBoundsByTile.get(tileIndex)) {
+                if (bounds[0] <= query[3] + EPSILON && bounds[3] >= query[0] - EPSILON
+                        && bounds[1] <= query[4] + EPSILON && bounds[4] >= query[1] - EPSILON
+                        && bounds[2] <= query[5] + EPSILON && bounds[5] >= query[2] - EPSILON)
+                    return true;
+            }
+            return false;
+        }
+
+        private static double[] toBlockBounds(LittleBox box, double scale) {
+            double[] out = new double[6];
+            for (Axis axis : Axis.values()) {
+                out[axis.ordinal()] = box.getMin(axis) / scale;
+                out[axis.ordinal() + 3] = box.getMax(axis) / scale;
+            }
+            return out;
+        }
+
+        private static long cellKey(int x, int y, int z) {
+            return ((long) (x & 0x1FFFFF) << 42) | ((long) (y & 0x1FFFFF) << 21) | (z & 0x1FFFFF);
+        }
+
+        static final class QueryScratch {
+            final int[] visitedStamp;
+            int stamp;
+
+            QueryScratch(int tileCount) {
+                this.visitedStamp = new int[tileCount];
+            }
+        }
+    }
+
+    private record MaterialKey(String blockState, int color) {}
+
+    /**
+     * Per-file occluder eligibility table.
+     *
+     * No-collision and solid-face flags are resolved once per tile. Render-combine compatibility
+     * is resolved once per distinct (blockState, color) pair and shared by every tile with that
+     * material, so eligibility counters for a face cost one lookup instead of a scan over all tiles.
+     */
+    private static final class OccluderEligibility {
+        private final boolean[] noCollision;
+        private final boolean[] solidFace;
+        private final int[] materialByTile;
+        private final Map<LittleTile, Integer> tileIndexes = new IdentityHashMap<>();
+        private final Map<MaterialKey, Integer> materialIds = new HashMap<>();
+        private final List<LittleTile> materialRepresentatives = new ArrayList<>();
+        // Non-solid, collidable tiles per material: the only tiles whose eligibility depends on render-combine.
+        private final int[] combineCandidatesByMaterial;
+        private final int noCollisionTiles;
+        private final int solidFaceTiles;
+        private final OccluderCounts[] countsByMaterial;
+        private final boolean[][] combinableByMaterial;
+        private long renderCombineChecks;
+
+        OccluderEligibility(List<TileContext> tiles) {
+            int count = tiles.size();
+            this.noCollision = new boolean[count];
+            this.solidFace = new boolean[count];
+            this.materialByTile = new int[count];
+
+            int noCollisionCount = 0;
+            int solidCount = 0;
+            for (int index = 0; index < count; index++) {
+                TileContext context = tiles.get(index);
+                tileIndexes.put(context.tile, index);
+                materialByTile[index] = materialIdOf(context.tile);
+                noCollision[index] = isNoCollisionStructureTile(context);
+                if (noCollision[index]) {
+                    noCollisionCount++;
+                    continue;
+                }
+                solidFace[index] = context.tile.doesProvideSolidFace();
+                if (solidFace[index])
+                    solidCount++;
+            }
+            this.noCollisionTiles = noCollisionCount;
+            this.solidFaceTiles = solidCount;
+
+            int materials = materialRepresentatives.size();
+            this.combineCandidatesByMaterial = new int[materials];
+            for (int index = 0; index < count; index++)
+                if (!noCollision[index] && !solidFace[index])
+                    combineCandidatesByMaterial[materialByTile[index]]++;
+            this.countsByMaterial = new OccluderCounts[materials];
+            this.combinableByMaterial = new boolean[materials][];
+        }
+
+        private int materialIdOf(LittleTile tile) {
+            MaterialKey key = new MaterialKey(tile.getBlockName(), tile.color);
+            Integer existing = materialIds.get(key);
+            if (existing != null)
+                return existing;
+            int id = materialRepresentatives.size();
+            materialIds.put(key, id);
+            materialRepresentatives.add(tile);
+            return id;
+        }
+
+        int materialOf(LittleTile tile) {
+            Integer index = tileIndexes.get(tile);
+            if (index != null)
+                return materialByTile[index];
+            Integer id = materialIds.get(new MaterialKey(tile.getBlockName(), tile.color));
+            if (id == null)
+                throw new IllegalStateException("tile is not part of this file: " + tile.getBlockName());
+            return id;
+        }
+
+        boolean isEligible(int candidateIndex, int renderedMaterial) {
+            if (noCollision[candidateIndex])
+                return false;
+            return solidFace[candidateIndex] || combinableRow(renderedMaterial)[materialByTile[candidateIndex]];
+        }
+
+        /** Eligibility counters over all tiles of the file; identical for every inside face of a material. */
+        OccluderCounts countsFor(int renderedMaterial) {
+            synchronized (this) {
+                if (countsByMaterial[renderedMaterial] != null)
+                    return countsByMaterial[renderedMaterial];
+            }
+
+            boolean[] combinable = combinableRow(renderedMaterial);
+            OccluderCounts counts = new OccluderCounts();
+            counts.evaluatedTiles = noCollision.length;
+            counts.skippedNoCollisionStructureTiles = noCollisionTiles;
+            counts.eligibleSolidFaceTiles = solidFaceTiles;
+            for (int material = 0; material < combinable.length; material++)
+                if (combinable[material])
+                    counts.eligibleRenderCombinedOnlyTiles += combineCandidatesByMaterial[material];
+            counts.skippedIneligibleTiles = noCollision.length - noCollisionTiles - solidFaceTiles - counts.eligibleRenderCombinedOnlyTiles;
+
+            synchronized (this) {
+                if (countsByMaterial[renderedMaterial] == null)
+                    countsByMaterial[renderedMaterial] = counts;
+                return countsByMaterial[renderedMaterial];
+            }
+        }
+
+        private boolean[] combinableRow(int renderedMaterial) {
+            synchronized (this) {
+                if (combinableByMaterial[renderedMaterial] != null)
+                    return combinableByMaterial[renderedMaterial];
+            }
+
+            LittleTile rendered = materialRepresentatives.get(renderedMaterial);
+            boolean[] row = new boolean[materialRepresentatives.size()];
+            int checks = 0;
+            for (int material = 0; material < row.length; material++) {
+                if (combineCandidatesByMaterial[material] == 0)
+                    continue;
+                row[material] = materialRepresentatives.get(material).canBeRenderCombined(rendered);
+                checks++;
+            }
+
+            synchronized (this) {
+                if (combinableByMaterial[renderedMaterial] == null) {
+                    combinableByMaterial[renderedMaterial] = row;
+                    renderCombineChecks += checks;
+                }
+                return combinableByMaterial[renderedMaterial];
+            }
+        }
+
+        synchronized JsonObject toJson() {
+            int renderedMaterials = 0;
+            for (boolean[] row : combinableByMaterial)
+                if (row != null)
+                    renderedMaterials++;
+
+            JsonObject out = new JsonObject();
+            out.addProperty("tiles", noCollision.length);
+            out.addProperty("noCollisionStructureTiles", noCollisionTiles);
+            out.addProperty("solidFaceTiles", solidFaceTiles);
+            out.addProperty("distinctMaterials", materialRepresentatives.size());
+            out.addProperty("renderedMaterials", renderedMaterials);
+            out.addProperty("renderCombineChecks", renderCombineChecks);
+            return out;
+        }
+    }
+
+    private static final class BoxRef {
+        final String groupPath;
+        final int tileIndex;
+        final int boxIndex;
+        final TileContext rendered;
+        final LittleBox box;
+
+        BoxRef(String groupPath, int tileIndex, int boxIndex, TileContext rendered, LittleBox box) {
+            this.groupPath = groupPath;
+            this.tileIndex = tileIndex;
+            this.boxIndex = boxIndex;
+            this.rendered = rendered;
+            this.box = box;
+        }
+    }
+
+    /**
+     * Face evaluations for every box of a file, computed on a ForkJoinPool a window at a time.
+     *
+     * Boxes are enumerated in report order. The writer pulls results via {@link #next()} in the same
+     * traversal order; whenever it reaches the end of the current window, the next {@link #WINDOW_BOXES}
+     * boxes are evaluated, so at most one window of results is held at once, as with the streaming
+     * writer's serial path. Within a window, leaf tasks own a contiguous box range with their own working
+     * faces, summary accumulators and occluder query scratch, reused by later leaves; partial summaries are merged left to right, window after window, so
+     * counts and diagnostic samples match a serial run exactly.
+     */
+    private static final class ParallelFaceEvaluations {
+        private static final int LEAF_BOXES = 32;
+        private static final int WINDOW_BOXES = 4096;
+
+        final FaceSummaries summaries = new FaceSummaries();
+        private final List<BoxRef> boxes;
+        private final OccluderIndex occluders;
+        private final GeometryMode geometryMode;
+        private final ForkJoinPool pool;
+        private final ExportTimings timings;
+        // Query scratches are handed from leaf to leaf, so at most one exists per thread evaluating at a time.
+        private final Queue<OccluderIndex.QueryScratch> scratches = new ConcurrentLinkedQueue<>();
+        private final FaceEvaluation[][] window;
+        private int windowStart;
+        private int windowEnd;
+        private int cursor;
+
+        private ParallelFaceEvaluations(
+                List<BoxRef> boxes,
+                OccluderIndex occluders,
+                GeometryMode geometryMode,
+                ForkJoinPool pool,
+                ExportTimings timings) {
+            this.boxes = boxes;
+            this.occluders = occluders;
+            this.geometryMode = geometryMode;
+            this.pool = pool;
+            this.timings = timings;
+            this.window = new FaceEvaluation[Math.min(WINDOW_BOXES, boxes.size())][];
+        }
+
+        /**
+         * Prepares the evaluation of every box of {@code root}; faces are evaluated as the writer asks for
+         * them, and that time is recorded as the face evaluation phase.
+         */
+        static ParallelFaceEvaluations start(
+                LittleGroup root,
+                OccluderIndex occluders,
+                GeometryMode geometryMode,
+                ForkJoinPool pool,
+                ExportTimings timings) {
+            // Transformable caches are built lazily on first use; build them before workers can race on them.
+            for (TileContext context : occluders.tiles)
+                for (LittleBox box : context.tile)
+                    if (box instanceof LittleTransformableBox transformable)
+                        transformable.requestCache();
+            return new ParallelFaceEvaluations(collectBoxRefs(root), occluders, geometryMode, pool, timings);
+        }
+
+        FaceEvaluation[] next() {
+            if (cursor == windowEnd)
+                evaluateWindow();
+            FaceEvaluation[] out = window[cursor - windowStart];
+            window[cursor - windowStart] = null;
+            cursor++;
+            return out;
+        }
+
+        private void evaluateWindow() {
+            long started = System.nanoTime();
+            windowStart = windowEnd;
+            windowEnd = Math.min(boxes.size(), windowStart + WINDOW_BOXES);
+            summaries.merge(pool.invoke(new RangeTask(boxes, windowStart, windowStart, windowEnd, window, occluders, scratches, geometryMode)));
+            long elapsed = System.nanoTime() - started;
+            timings.add(ExportTimings.FACE_EVALUATION, elapsed);
+            timings.exclude(elapsed);
+        }
+
+        private static final class RangeTask extends RecursiveTask<FaceSummaries> {
+            private final List<BoxRef> boxes;
+            private final int base;
+            private final int from;
+            private final int to;
+            private final FaceEvaluation[][] results;
+            private final OccluderIndex occluders;
+            private final Queue<OccluderIndex.QueryScratch> scratches;
+            private final GeometryMode geometryMode;
+
+            /** Evaluates boxes {@code from..to} into {@code results}, which starts at box {@code base}. */
+            RangeTask(
+                    List<BoxRef> boxes,
+                    int base,
+                    int from,
+                    int to,
+                    FaceEvaluation[][] results,
+                    OccluderIndex occluders,
+                    Queue<OccluderIndex.QueryScratch> scratches,
+                    GeometryMode geometryMode) {
+                this.boxes = boxes;
+                this.base = base;
+                this.from = from;
+                this.to = to;
+                this.results = results;
+                this.occluders = occluders;
+                this.scratches = scratches;
+                this.geometryMode = geometryMode;
+            }
+
+            @Override
+            protected FaceSummaries compute() {
+                if (to - from <= LEAF_BOXES) {
+                    FaceSummaries summaries = new FaceSummaries();
+                    OccluderIndex.QueryScratch scratch = scratches.poll();
+                    if (scratch == null)
+                        scratch = occluders.newScratch();
+                    try {
+                        for (int index = from; index < to; index++) {
+                            BoxRef ref = boxes.get(index);
+                            results[index - base] = evaluateBoxFaces(
+                                    ref.groupPath,
+                                    ref.tileIndex,
+                                    ref.boxIndex,
+                                    ref.rendered,
+                                    ref.box,
+                                    occluders,
+                                    scratch,
+                                    summaries.faceSummary,
+                                    summaries.transformableDiagnostics,
+                                    geometryMode);
+                        }
+                    } finally {
+                        scratches.offer(scratch);
+                    }
+                    return summaries;
+                }
+
+                int middle = (from + to) >>> 1;
+                RangeTask left = new RangeTask(boxes, base, from, middle, results, occluders, scratches, geometryMode);
+                RangeTask right = new RangeTask(boxes, base, middle, to, results, occluders, scratches, geometryMode);
+                left.fork();
+                FaceSummaries rightSummaries = right.compute();
+                FaceSummaries leftSummaries = left.join();
+                leftSummaries.merge(rightSummaries);
+                return leftSummaries;
+            }
+        }
+    }
+
+    private static final class FaceSummaries {
+        final FaceStateSummary faceSummary = new FaceStateSummary();
+        final TransformableDiagnosticsSummary transformableDiagnostics = new TransformableDiagnosticsSummary();
+
+        /** Appends a summary covering the boxes directly after this one. */
+        void merge(FaceSummaries next) {
+            faceSummary.merge(next.faceSummary);
+            transformableDiagnostics.merge(next.transformableDiagnostics);
+        }
+    }
+
     private static final class DebugParentCollection implements IParentCollection {
         private final LittleGroup group;
         private final int attribute;
@@ -764,6 +1697,10 @@ public final class LtDebugExportCommand {
         int eligibleRenderCombinedOnlyTiles;
         int skippedNoCollisionStructureTiles;
         int skippedIneligibleTiles;
+        /** Spatial-index candidates looked at for this face, and how many of them were asked to fill it. Not written per face. */
+        boolean queriedCandidates;
+        int candidateTilesScanned;
+        int candidateTilesFilled;
 
         private FaceEvaluation(
                 Facing facing,
@@ -813,26 +1750,28 @@ public final class LtDebugExportCommand {
             return state != LittleFaceState.UNLOADED && !state.coveredFully();
         }
 
-        JsonObject toJson() {
-            JsonObject out = new JsonObject();
-            out.addProperty("facing", facing.name());
-            out.addProperty("state", state.name());
-            out.addProperty("outside", state.outside());
-            out.addProperty("coveredFully", state.coveredFully());
-            out.addProperty("partially", state.partially());
-            out.addProperty("renderable", renderable());
-            out.addProperty("reason", reason);
-            out.addProperty("filledCells", filledCells);
-            out.addProperty("totalCells", totalCells);
-            out.addProperty("evaluatedTiles", evaluatedTiles);
-            out.addProperty("eligibleTiles", eligibleTiles);
-            out.addProperty("eligibleSolidFaceTiles", eligibleSolidFaceTiles);
-            out.addProperty("eligibleRenderCombinedOnlyTiles", eligibleRenderCombinedOnlyTiles);
-            out.addProperty("skippedNoCollisionStructureTiles", skippedNoCollisionStructureTiles);
-            out.addProperty("skippedIneligibleTiles", skippedIneligibleTiles);
-            if (transformableCache != null)
-                out.add("transformableCache", transformableCache.toJson());
-            return out;
+        void write(JsonWriter out) throws IOException {
+            out.beginObject();
+            out.name("facing").value(facing.name());
+            out.name("state").value(state.name());
+            out.name("outside").value(state.outside());
+            out.name("coveredFully").value(state.coveredFully());
+            out.name("partially").value(state.partially());
+            out.name("renderable").value(renderable());
+            out.name("reason").value(reason);
+            out.name("filledCells").value(filledCells);
+            out.name("totalCells").value(totalCells);
+            out.name("evaluatedTiles").value(evaluatedTiles);
+            out.name("eligibleTiles").value(eligibleTiles);
+            out.name("eligibleSolidFaceTiles").value(eligibleSolidFaceTiles);
+            out.name("eligibleRenderCombinedOnlyTiles").value(eligibleRenderCombinedOnlyTiles);
+            out.name("skippedNoCollisionStructureTiles").value(skippedNoCollisionStructureTiles);
+            out.name("skippedIneligibleTiles").value(skippedIneligibleTiles);
+            if (transformableCache != null) {
+                out.name("transformableCache");
+                transformableCache.write(out);
+            }
+            out.endObject();
         }
     }
 
@@ -860,14 +1799,59 @@ public final class LtDebugExportCommand {
             return new TransformableFaceCacheSnapshot(0, 0, false, false, false);
         }
 
-        JsonObject toJson() {
-            JsonObject out = new JsonObject();
-            out.addProperty("axisStripCount", axisStripCount);
-            out.addProperty("tiltedRenderCount", tiltedRenderCount);
-            out.addProperty("hasAxisStrip", hasAxisStrip);
-            out.addProperty("hasTiltedStrip", hasTiltedStrip);
-            out.addProperty("isCompletelyFilled", isCompletelyFilled);
-            return out;
+        void write(JsonWriter out) throws IOException {
+            out.beginObject();
+            out.name("axisStripCount").value(axisStripCount);
+            out.name("tiltedRenderCount").value(tiltedRenderCount);
+            out.name("hasAxisStrip").value(hasAxisStrip);
+            out.name("hasTiltedStrip").value(hasTiltedStrip);
+            out.name("isCompletelyFilled").value(isCompletelyFilled);
+            out.endObject();
+        }
+    }
+
+    /**
+     * Transformable cache diagnostics for one box.
+     *
+     * The fresh copy and its cache are built once per box and its results are derived for all six
+     * facings up front. The current-cache side is still probed per facing, at the point the
+     * facing is evaluated, so it observes the same cache state as before.
+     */
+    private static final class TransformableBoxDiagnostics {
+        private final TileContext rendered;
+        private final LittleTransformableBox transformable;
+        private final LittleServerFace probeFace = new LittleServerFace(null);
+        private final TransformableFaceCacheSnapshot[] freshSnapshots = new TransformableFaceCacheSnapshot[Facing.VALUES.length];
+        private final boolean[] generateFaceFreshNull = new boolean[Facing.VALUES.length];
+        private final boolean[] setFreshResult = new boolean[Facing.VALUES.length];
+
+        TransformableBoxDiagnostics(TileContext rendered, LittleTransformableBox transformable) {
+            this.rendered = rendered;
+            this.transformable = transformable;
+
+            LittleTransformableBox freshCopy = transformable.copy();
+            freshCopy.requestCache();
+            LittleGrid grid = rendered.parent.getGrid();
+            for (Facing facing : Facing.VALUES) {
+                int index = facing.ordinal();
+                freshSnapshots[index] = snapshotTransformableFaceCacheState(freshCopy, facing);
+                generateFaceFreshNull[index] = freshCopy.generateFace(grid, facing) == null;
+                setFreshResult[index] = probeSetResult(rendered, freshCopy, facing, probeFace);
+            }
+        }
+
+        TransformableFaceCacheDebug forFacing(Facing facing) {
+            int index = facing.ordinal();
+            TransformableFaceCacheSnapshot current = snapshotTransformableFaceCacheState(transformable, facing);
+            boolean generateFaceCurrentNull = transformable.generateFace(rendered.parent.getGrid(), facing) == null;
+            boolean setCurrentResult = probeSetResult(rendered, transformable, facing, probeFace);
+            return new TransformableFaceCacheDebug(
+                    current,
+                    freshSnapshots[index],
+                    generateFaceCurrentNull,
+                    generateFaceFreshNull[index],
+                    setCurrentResult,
+                    setFreshResult[index]);
         }
     }
 
@@ -924,32 +1908,34 @@ public final class LtDebugExportCommand {
             this.setResultMismatch = setCurrentResult != setFreshResult;
         }
 
-        JsonObject toJson() {
-            JsonObject out = new JsonObject();
-            out.addProperty("axisStripCount", axisStripCount);
-            out.addProperty("tiltedRenderCount", tiltedRenderCount);
-            out.addProperty("hasAxisStrip", hasAxisStrip);
-            out.addProperty("hasTiltedStrip", hasTiltedStrip);
-            out.addProperty("isCompletelyFilled", isCompletelyFilled);
-            out.add("current", current.toJson());
-            out.add("fresh", fresh.toJson());
-            out.addProperty("currentVsFreshMismatch", currentVsFreshMismatch);
-
-            JsonObject fieldMismatches = new JsonObject();
-            fieldMismatches.addProperty("axisStripCount", axisStripCountMismatch);
-            fieldMismatches.addProperty("tiltedRenderCount", tiltedRenderCountMismatch);
-            fieldMismatches.addProperty("hasAxisStrip", hasAxisStripMismatch);
-            fieldMismatches.addProperty("hasTiltedStrip", hasTiltedStripMismatch);
-            fieldMismatches.addProperty("isCompletelyFilled", isCompletelyFilledMismatch);
-            out.add("fieldMismatches", fieldMismatches);
-
-            out.addProperty("generateFaceCurrentNull", generateFaceCurrentNull);
-            out.addProperty("generateFaceFreshNull", generateFaceFreshNull);
-            out.addProperty("generateFaceNullMismatch", generateFaceNullMismatch);
-            out.addProperty("setCurrentResult", setCurrentResult);
-            out.addProperty("setFreshResult", setFreshResult);
-            out.addProperty("setResultMismatch", setResultMismatch);
-            return out;
+        void write(JsonWriter out) throws IOException {
+            out.beginObject();
+            out.name("axisStripCount").value(axisStripCount);
+            out.name("tiltedRenderCount").value(tiltedRenderCount);
+            out.name("hasAxisStrip").value(hasAxisStrip);
+            out.name("hasTiltedStrip").value(hasTiltedStrip);
+            out.name("isCompletelyFilled").value(isCompletelyFilled);
+            out.name("current");
+            current.write(out);
+            out.name("fresh");
+            fresh.write(out);
+            out.name("currentVsFreshMismatch").value(currentVsFreshMismatch);
+
+            out.name("fieldMismatches").beginObject();
+            out.name("axisStripCount").value(axisStripCountMismatch);
+            out.name("tiltedRenderCount").value(tiltedRenderCountMismatch);
+            out.name("hasAxisStrip").value(hasAxisStripMismatch);
+            out.name("hasTiltedStrip").value(hasTiltedStripMismatch);
+            out.name("isCompletelyFilled").value(isCompletelyFilledMismatch);
+            out.endObject();
+
+            out.name("generateFaceCurrentNull").value(generateFaceCurrentNull);
+            out.name("generateFaceFreshNull").value(generateFaceFreshNull);
+            out.name("generateFaceNullMismatch").value(generateFaceNullMismatch);
+            out.name("setCurrentResult").value(setCurrentResult);
+            out.name("setFreshResult").value(setFreshResult);
+            out.name("setResultMismatch").value(setResultMismatch);
+            out.endObject();
         }
     }
 
@@ -958,6 +1944,10 @@ public final class LtDebugExportCommand {
         int renderableFaces;
         int insideFaces;
         int outsideFaces;
+        int candidateScannedFaces;
+        long candidateTilesScanned;
+        long candidateTilesFilled;
+        int maxCandidateTilesPerFace;
         final EnumMap<LittleFaceState, Integer> byState = new EnumMap<>(LittleFaceState.class);
         final EnumMap<Facing, Integer> byFacing = new EnumMap<>(Facing.class);
         final Map<String, Integer> byReason = new HashMap<>();
@@ -980,6 +1970,29 @@ public final class LtDebugExportCommand {
                 insideFaces++;
             if (face.renderable())
                 renderableFaces++;
+            if (!face.queriedCandidates)
+                return;
+            candidateScannedFaces++;
+            candidateTilesScanned += face.candidateTilesScanned;
+            candidateTilesFilled += face.candidateTilesFilled;
+            maxCandidateTilesPerFace = Math.max(maxCandidateTilesPerFace, face.candidateTilesScanned);
+        }
+
+        void merge(FaceStateSummary other) {
+            totalFaces += other.totalFaces;
+            renderableFaces += other.renderableFaces;
+            insideFaces += other.insideFaces;
+            outsideFaces += other.outsideFaces;
+            candidateScannedFaces += other.candidateScannedFaces;
+            candidateTilesScanned += other.candidateTilesScanned;
+            candidateTilesFilled += other.candidateTilesFilled;
+            maxCandidateTilesPerFace = Math.max(maxCandidateTilesPerFace, other.maxCandidateTilesPerFace);
+            for (Map.Entry<LittleFaceState, Integer> entry : other.byState.entrySet())
+                byState.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            for (Map.Entry<Facing, Integer> entry : other.byFacing.entrySet())
+                byFacing.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            for (Map.Entry<String, Integer> entry : other.byReason.entrySet())
+                byReason.merge(entry.getKey(), entry.getValue(), Integer::sum);
         }
 
         JsonObject toJson() {
@@ -991,6 +2004,15 @@ public final class LtDebugExportCommand {
             out.add("byState", enumCountMapToJson(byState));
             out.add("byFacing", enumCountMapToJson(byFacing));
             out.add("byReason", stringCountMapToJson(byReason));
+
+            JsonObject candidateScan = new JsonObject();
+            candidateScan.addProperty("faces", candidateScannedFaces);
+            candidateScan.addProperty("candidateTilesScanned", candidateTilesScanned);
+            candidateScan.addProperty("candidateTilesFilled", candidateTilesFilled);
+            candidateScan.addProperty("meanCandidateTilesPerFace",
+                    candidateScannedFaces > 0 ? (double) candidateTilesScanned / candidateScannedFaces : 0);
+            candidateScan.addProperty("maxCandidateTilesPerFace", maxCandidateTilesPerFace);
+            out.add("candidateScan", candidateScan);
             return out;
         }
     }
@@ -1031,6 +2053,25 @@ public final class LtDebugExportCommand {
             samples.add(new FaceLocationSample(path, tileIndex, boxIndex, facing));
         }
 
+        /** Appends counts and samples of faces recorded after this summary's faces. */
+        void merge(TransformableDiagnosticsSummary next) {
+            transformableFacesEvaluated += next.transformableFacesEvaluated;
+            currentVsFreshCacheMismatchFaces += next.currentVsFreshCacheMismatchFaces;
+            generateFaceCurrentVsFreshMismatchFaces += next.generateFaceCurrentVsFreshMismatchFaces;
+            setCurrentVsFreshMismatchFaces += next.setCurrentVsFreshMismatchFaces;
+            appendSamples(cacheMismatchSamples, next.cacheMismatchSamples);
+            appendSamples(generateFaceMismatchSamples, next.generateFaceMismatchSamples);
+            appendSamples(setMismatchSamples, next.setMismatchSamples);
+        }
+
+        private static void appendSamples(List<FaceLocationSample> samples, List<FaceLocationSample> next) {
+            for (FaceLocationSample sample : next) {
+                if (samples.size() >= SAMPLE_LIMIT)
+                    return;
+                samples.add(sample);
+            }
+        }
+
         JsonObject toJson() {
             JsonObject out = new JsonObject();
             out.addProperty("transformableFacesEvaluated", transformableFacesEvaluated);
@@ -1089,18 +2130,39 @@ public final class LtDebugExportCommand {
         return out;
     }
 
-    private static final class Counter {
+    static final class Counter {
         int groups;
         int tiles;
         int boxes;
         int transformableBoxes;
+
+        JsonObject toJson() {
+            JsonObject out = new JsonObject();
+            out.addProperty("groups", groups);
+            out.addProperty("tiles", tiles);
+            out.addProperty("boxes", boxes);
+            out.addProperty("transformableBoxes", transformableBoxes);
+            return out;
+        }
+
+        static Counter fromJson(JsonObject json) {
+            Counter out = new Counter();
+            out.groups = json.get("groups").getAsInt();
+            out.tiles = json.get("tiles").getAsInt();
+            out.boxes = json.get("boxes").getAsInt();
+            out.transformableBoxes = json.get("transformableBoxes").getAsInt();
+            return out;
+        }
     }
 
-    private static final class ProcessResult {
+    /** Timings are null when the file was skipped as a cache hit. */
+    static final class ProcessResult {
         final Counter counter;
+        final ExportTimings timings;
 
-        ProcessResult(Counter counter) {
+        ProcessResult(Counter counter, ExportTimings timings) {
             this.counter = counter;
+            this.timings = timings;
         }
     }
 }
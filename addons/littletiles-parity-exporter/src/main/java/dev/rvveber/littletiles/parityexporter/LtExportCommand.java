@@ -0,0 +1,368 @@
+package dev.rvveber.littletiles.parityexporter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import com.google.gson.JsonObject;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+
+import dev.rvveber.littletiles.parityexporter.LtDebugExportCommand.ExportSettings;
+import dev.rvveber.littletiles.parityexporter.LtDebugExportCommand.GeometryMode;
+import dev.rvveber.littletiles.parityexporter.LtGltfExportCommand.GltfProcessResult;
+import dev.rvveber.littletiles.parityexporter.LtGltfExportCommand.GltfSettings;
+import dev.rvveber.littletiles.parityexporter.LtTextureExportCommand.TextureProcessResult;
+import dev.rvveber.littletiles.parityexporter.LtTextureExportCommand.TextureResolver;
+import dev.rvveber.littletiles.parityexporter.LtTextureExportCommand.TextureSettings;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.MinecraftServer;
+
+/**
+ * Combined export: each input is parsed, converted and loaded once, then handed to every selected
+ * output stage (debug report, texture report, glTF mesh) in the same pass.
+ *
+ * Outputs are written with the same file names and content as the individual commands, so one output
+ * directory can take all of them. Files are processed sequentially; the texture resolver is shared
+ * across the batch.
+ */
+public final class LtExportCommand {
+
+    enum Output {
+        DEBUG("debug"),
+        TEXTURES("textures"),
+        GLTF("gltf");
+
+        final String id;
+
+        Output(String id) {
+            this.id = id;
+        }
+
+        static Output fromArg(String raw) {
+            String value = raw == null ? "" : raw.trim().toLowerCase();
+            return switch (value) {
+                case "debug" -> DEBUG;
+                case "textures", "texture" -> TEXTURES;
+                case "gltf", "mesh" -> GLTF;
+                default -> null;
+            };
+        }
+    }
+
+    /**
+     * Batch settings: {@code outputs=debug,textures,gltf} selects the stages (default {@code debug,textures}),
+     * {@code merge=} goes to the glTF stage, {@code store=} and {@code atlas=} to the texture stage, every other
+     * option to the debug stage. {@code workers}, also as a bare number, is rejected since files are processed
+     * sequentially; any other token without {@code =} is an unknown option.
+     */
+    static final class CombinedSettings {
+        final Set<Output> outputs;
+        final ExportSettings debug;
+        final TextureSettings textures;
+        final GltfSettings gltf;
+
+        private CombinedSettings(Set<Output> outputs, ExportSettings debug, TextureSettings textures, GltfSettings gltf) {
+            this.outputs = outputs;
+            this.debug = debug;
+            this.textures = textures;
+            this.gltf = gltf;
+        }
+
+        static CombinedSettings parse(GeometryMode geometryMode, String optionsArg) {
+            Set<Output> outputs = EnumSet.of(Output.DEBUG, Output.TEXTURES);
+            StringJoiner debugOptions = new StringJoiner(" ");
+            StringJoiner textureOptions = new StringJoiner(" ");
+            StringJoiner gltfOptions = new StringJoiner(" ");
+            String options = optionsArg == null ? "" : optionsArg.trim();
+            for (String token : options.isEmpty() ? new String[0] : options.split("\\s+")) {
+                int equals = token.indexOf('=');
+                // Only a bare number is the debug export's positional worker count.
+                if (equals < 0 && !isInteger(token))
+                    throw new IllegalArgumentException("unknown option \"" + token + "\"");
+                String key = equals < 0 ? "workers" : token.substring(0, equals).toLowerCase();
+                switch (key) {
+                    case "outputs" -> outputs = parseOutputs(token.substring(equals + 1));
+                    case "merge" -> gltfOptions.add(token);
+                    case "store", "atlas" -> textureOptions.add(token);
+                    case "workers" -> throw new IllegalArgumentException("workers is not supported; files are processed sequentially");
+                    default -> debugOptions.add(token);
+                }
+            }
+            return new CombinedSettings(
+                    outputs,
+                    ExportSettings.parse(geometryMode, debugOptions.toString()),
+                    TextureSettings.parse(textureOptions.toString()),
+                    GltfSettings.parse(geometryMode, gltfOptions.toString()));
+        }
+
+        private static boolean isInteger(String token) {
+            try {
+                Integer.parseInt(token);
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        private static Set<Output> parseOutputs(String value) {
+            Set<Output> outputs = EnumSet.noneOf(Output.class);
+            for (String raw : value.split(",")) {
+                Output output = Output.fromArg(raw);
+                if (output == null)
+                    throw new IllegalArgumentException("invalid output \"" + raw + "\" (expected: debug|textures|gltf)");
+                outputs.add(output);
+            }
+            return outputs;
+        }
+
+        String describeOutputs() {
+            StringJoiner out = new StringJoiner("+");
+            for (Output output : outputs)
+                out.add(output.id);
+            return out.toString();
+        }
+
+        /** The debug key plus the selected outputs, the glTF merge switch and, with textures, their asset key. */
+        String cacheKey() {
+            return debug.cacheKey() + "\noutputs=" + describeOutputs() + "\nmerge=" + gltf.merge +
+                    (outputs.contains(Output.TEXTURES) ? "\n" + textures.assetKey() : "");
+        }
+    }
+
+    private LtExportCommand() {}
+
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        LiteralArgumentBuilder<CommandSourceStack> root = Commands.literal("lt-export")
+                .requires(source -> source.hasPermission(2))
+                .then(Commands.argument("input_dir", StringArgumentType.string())
+                        .then(Commands.argument("output_dir", StringArgumentType.string())
+                                .executes(context -> executeBatch(
+                                        context.getSource(),
+                                        StringArgumentType.getString(context, "input_dir"),
+                                        StringArgumentType.getString(context, "output_dir"),
+                                        "client",
+                                        ""))
+                                .then(Commands.argument("geometry_mode", StringArgumentType.word())
+                                        .executes(context -> executeBatch(
+                                                context.getSource(),
+                                                StringArgumentType.getString(context, "input_dir"),
+                                                StringArgumentType.getString(context, "output_dir"),
+                                                StringArgumentType.getString(context, "geometry_mode"),
+                                                ""))
+                                        .then(Commands.argument("options", StringArgumentType.greedyString())
+                                                .executes(context -> executeBatch(
+                                                        context.getSource(),
+                                                        StringArgumentType.getString(context, "input_dir"),
+                                                        StringArgumentType.getString(context, "output_dir"),
+                                                        StringArgumentType.getString(context, "geometry_mode"),
+                                                        StringArgumentType.getString(context, "options")))))));
+        dispatcher.register(root);
+    }
+
+    private static int executeBatch(
+            CommandSourceStack source,
+            String inputDirArg,
+            String outputDirArg,
+            String geometryModeArg,
+            String optionsArg) {
+        GeometryMode geometryMode = GeometryMode.fromArg(geometryModeArg);
+        if (geometryMode == null) {
+            source.sendFailure(Component.literal(
+                    "lt-export failed: invalid geometry_mode \"" + geometryModeArg + "\" (expected: client|server)"));
+            return 0;
+        }
+        CombinedSettings settings;
+        try {
+            settings = CombinedSettings.parse(geometryMode, optionsArg);
+        } catch (IllegalArgumentException e) {
+            source.sendFailure(Component.literal("lt-export failed: " + e.getMessage()));
+            return 0;
+        }
+
+        MinecraftServer server = source.getServer();
+        Path inputDir = ExportPaths.resolve(server, inputDirArg);
+        Path outputDir = ExportPaths.resolve(server, outputDirArg);
+        Path storeDir = settings.textures.store != null ? ExportPaths.resolve(server, settings.textures.store) : null;
+
+        try {
+            if (!Files.isDirectory(inputDir)) {
+                source.sendFailure(Component.literal("lt-export failed: input path is not a directory: " + inputDir));
+                return 0;
+            }
+            Files.createDirectories(outputDir);
+
+            List<Path> inputFiles;
+            try (Stream<Path> stream = Files.list(inputDir)) {
+                inputFiles = stream
+                        .filter(Files::isRegularFile)
+                        .sorted(Comparator.comparing(path -> path.getFileName().toString()))
+                        .toList();
+            }
+
+            if (inputFiles.isEmpty()) {
+                source.sendFailure(Component.literal("lt-export failed: input directory has no files: " + inputDir));
+                return 0;
+            }
+
+            ExportJobs.submit(source, "lt-export", inputFiles.size(),
+                    job -> runBatch(job, inputFiles, outputDir, storeDir, settings));
+            return 1;
+        } catch (Exception e) {
+            source.sendFailure(Component.literal("lt-export batch failed: " + e.getMessage()));
+            LittleTilesParityExporter.LOGGER.error("lt-export batch failed for inputDir {}", inputDir, e);
+            return 0;
+        }
+    }
+
+    static void runBatch(
+            ExportJobs.Job job,
+            List<Path> inputFiles,
+            Path outputDir,
+            Path storeDir,
+            CombinedSettings settings) throws Exception {
+        int ok = 0;
+        int failed = 0;
+        int cancelled = 0;
+        JsonObject totals = new JsonObject();
+        List<String> failures = new ArrayList<>();
+        ExportTimings.Rollup timings = new ExportTimings.Rollup();
+        ExportCache cache = ExportCache.open(outputDir, "lt-export", settings.cacheKey(), settings.debug.reuseCache);
+        Path texturesRoot = outputDir.resolve("textures");
+        if (settings.outputs.contains(Output.TEXTURES))
+            Files.createDirectories(texturesRoot);
+        TextureResolver resolver = settings.outputs.contains(Output.TEXTURES) ? TextureResolver.open(outputDir, storeDir) : null;
+        ForkJoinPool facePool = settings.debug.faceWorkers > 1 ? new ForkJoinPool(settings.debug.faceWorkers) : null;
+
+        try {
+            for (Path inputPath : inputFiles) {
+                if (job.isCancelRequested()) {
+                    cancelled++;
+                    continue;
+                }
+                try {
+                    ExportCache.Probe probe = cache.probe(inputPath);
+                    JsonObject stats = probe.stats();
+                    if (!probe.hit()) {
+                        List<Path> outputs = new ArrayList<>();
+                        ExportTimings fileTimings = new ExportTimings();
+                        stats = processSingleFile(inputPath, outputDir, texturesRoot, resolver, facePool, settings, fileTimings, outputs);
+                        timings.record(inputPath.getFileName().toString(), fileTimings);
+                        cache.record(probe, outputs, stats);
+                    }
+                    ok++;
+                    addTotals(totals, stats);
+                } catch (Exception e) {
+                    failed++;
+                    failures.add(inputPath.getFileName() + ": " + e.getMessage());
+                    LittleTilesParityExporter.LOGGER.error("lt-export failed for input {}", inputPath, e);
+                } finally {
+                    job.fileCompleted();
+                }
+            }
+        } finally {
+            if (facePool != null)
+                facePool.shutdownNow();
+            LtDebugExportCommand.saveCache(cache, outputDir);
+            if (resolver != null)
+                resolver.close();
+        }
+
+        StringBuilder summary = new StringBuilder("lt-export processed ")
+                .append(inputFiles.size() - cancelled).append(" files to ").append(outputDir)
+                .append(" (ok=").append(ok).append(", failed=").append(failed)
+                .append(", outputs=").append(settings.describeOutputs())
+                .append(", geometryMode=").append(settings.debug.geometryMode.id);
+        for (String key : totals.keySet())
+            summary.append(", ").append(key).append('=').append(totals.get(key).getAsLong());
+        if (cancelled > 0)
+            summary.append(", cancelled=").append(cancelled);
+        job.sendSuccess(summary.append(')').toString());
+        job.sendSuccess("  " + cache.describe());
+        if (resolver != null) {
+            job.sendSuccess("  " + resolver.describeIndex());
+            job.sendSuccess("  " + resolver.describeFiles());
+            job.sendSuccess("  " + resolver.describeAssets());
+        }
+        if (!timings.isEmpty()) {
+            job.sendSuccess("  " + timings.describeFiles());
+            job.sendSuccess("  " + timings.describePhases());
+        }
+
+        if (!failures.isEmpty()) {
+            int maxLines = Math.min(5, failures.size());
+            for (int i = 0; i < maxLines; i++)
+                job.sendFailure("  - " + failures.get(i));
+            if (failures.size() > maxLines)
+                job.sendFailure("  ... and " + (failures.size() - maxLines) + " more failures");
+        }
+    }
+
+    /**
+     * Loads {@code inputPath} once and runs every selected stage on it, in debug, textures, glTF order.
+     * Collects the files written into {@code outputs} and returns the stages' summary counters.
+     */
+    static JsonObject processSingleFile(
+            Path inputPath,
+            Path outputDir,
+            Path texturesRoot,
+            TextureResolver resolver,
+            ForkJoinPool facePool,
+            CombinedSettings settings,
+            ExportTimings timings,
+            List<Path> outputs) throws Exception {
+        LoadedInput input = LoadedInput.load(inputPath, timings);
+        String inputFileName = inputPath.getFileName().toString();
+        JsonObject stats = new JsonObject();
+
+        if (settings.outputs.contains(Output.DEBUG)) {
+            Path reportPath = outputDir.resolve(LtDebugExportCommand.toOutputFileName(inputFileName));
+            LtDebugExportCommand.ProcessResult result = LtDebugExportCommand.writeReport(input, reportPath, settings.debug, facePool, timings);
+            outputs.add(reportPath);
+            if (settings.debug.snbtStorage == LtDebugExportCommand.SnbtStorage.GZIP)
+                outputs.add(LtDebugExportCommand.toSidecarPath(reportPath));
+            JsonObject counter = result.counter.toJson();
+            stats.add("tiles", counter.get("tiles"));
+            stats.add("boxes", counter.get("boxes"));
+        }
+
+        if (settings.outputs.contains(Output.TEXTURES)) {
+            Path reportPath = outputDir.resolve(LtTextureExportCommand.toOutputFileName(inputFileName));
+            TextureProcessResult result = LtTextureExportCommand.writeReport(input, reportPath, texturesRoot, resolver, settings.textures.atlas, timings);
+            outputs.add(reportPath);
+            for (String uri : result.outputUris())
+                outputs.add(outputDir.resolve(uri));
+            JsonObject textureStats = result.stats();
+            for (String key : textureStats.keySet())
+                stats.add(key, textureStats.get(key));
+        }
+
+        if (settings.outputs.contains(Output.GLTF)) {
+            GltfProcessResult result = LtGltfExportCommand.writeGltf(input, outputDir, settings.gltf, timings);
+            String baseName = ExportPaths.baseName(inputFileName);
+            outputs.add(outputDir.resolve(baseName + ".gltf"));
+            outputs.add(outputDir.resolve(baseName + ".bin"));
+            JsonObject gltfStats = result.stats();
+            for (String key : gltfStats.keySet())
+                stats.add(key, gltfStats.get(key));
+        }
+        return stats;
+    }
+
+    private static void addTotals(JsonObject totals, JsonObject stats) {
+        for (String key : stats.keySet()) {
+            long previous = totals.has(key) ? totals.get(key).getAsLong() : 0;
+            totals.addProperty(key, previous + stats.get(key).getAsLong());
+        }
+    }
+}
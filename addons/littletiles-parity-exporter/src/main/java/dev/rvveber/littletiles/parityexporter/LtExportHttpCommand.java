@@ -0,0 +1,547 @@
+package dev.rvveber.littletiles.parityexporter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import dev.rvveber.littletiles.parityexporter.LtDebugExportCommand.ExportSettings;
+import dev.rvveber.littletiles.parityexporter.LtDebugExportCommand.GeometryMode;
+import dev.rvveber.littletiles.parityexporter.LtExportCommand.CombinedSettings;
+import dev.rvveber.littletiles.parityexporter.LtExportCommand.Output;
+import dev.rvveber.littletiles.parityexporter.LtTextureExportCommand.TextureReport;
+import dev.rvveber.littletiles.parityexporter.LtTextureExportCommand.TextureResolver;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.MinecraftServer;
+
+/**
+ * Loopback HTTP endpoint for single exports: {@code POST /export/debug|textures|gltf} with SNBT as the request
+ * body returns the debug report, the texture report or a binary glTF mesh in the response.
+ *
+ * The body is parsed as it arrives and the response is encoded in memory, so neither the input nor the report
+ * touches the disk; only the exported textures and atlas pages are written, into the endpoint's output
+ * directory, which texture report uris are relative to. Atlas pages go to {@code requests/<uuid>/atlases/} so
+ * concurrent requests never share a page or temp file; request directories are kept for ten minutes so clients
+ * can fetch the pages, and all of them are deleted when the endpoint starts or stops. Requests whose {@code Host} or {@code Origin} is not a
+ * loopback name are refused, which keeps web pages (directly or through DNS rebinding) from starting exports.
+ * Requests run on virtual threads. At most
+ * {@code concurrency} exports run at once; a request that cannot start within the queue timeout gets a 503.
+ * Every response carries a {@code Server-Timing} header with the time spent waiting for a slot and in each
+ * export phase.
+ */
+public final class LtExportHttpCommand {
+
+    private static final int DEFAULT_PORT = 25580;
+    private static final long DEFAULT_QUEUE_MILLIS = 10_000;
+    private static final long MAX_QUEUE_MILLIS = 60_000;
+    private static final long MAX_BODY_BYTES = 64L * 1024 * 1024;
+    private static final String CONTEXT = "/export/";
+    private static final Set<String> REQUEST_OPTIONS = Set.of("format", "merge", "atlas");
+    private static final Pattern INPUT_NAME = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]*");
+    private static final Set<String> LOOPBACK_HOSTS = Set.of("localhost", "127.0.0.1", "[::1]");
+    private static final long REQUEST_RETENTION_MINUTES = 10;
+    private static final long REQUEST_PRUNE_INTERVAL_MILLIS = 60_000;
+
+    private static volatile Endpoint endpoint;
+
+    private LtExportHttpCommand() {}
+
+    /**
+     * Endpoint settings: {@code port=<1-65535>} (default 25580), {@code concurrency=<1-64>} (default: available
+     * processors), {@code queue=<ms>} (default 10000), {@code faceWorkers=<1-64>} for a face pool shared by all
+     * requests, and {@code store=<dir>} for the texture store.
+     */
+    static final class HttpSettings {
+        final int port;
+        final int concurrency;
+        final long queueMillis;
+        final int faceWorkers;
+        final String store;
+
+        private HttpSettings(int port, int concurrency, long queueMillis, int faceWorkers, String store) {
+            this.port = port;
+            this.concurrency = concurrency;
+            this.queueMillis = queueMillis;
+            this.faceWorkers = faceWorkers;
+            this.store = store;
+        }
+
+        static HttpSettings parse(String optionsArg) {
+            int port = DEFAULT_PORT;
+            int concurrency = Math.min(LtDebugExportCommand.MAX_WORKERS, Runtime.getRuntime().availableProcessors());
+            long queueMillis = DEFAULT_QUEUE_MILLIS;
+            int faceWorkers = 1;
+            String store = null;
+            String options = optionsArg == null ? "" : optionsArg.trim();
+            for (String token : options.isEmpty() ? new String[0] : options.split("\\s+")) {
+                int equals = token.indexOf('=');
+                String key = equals < 0 ? token.toLowerCase() : token.substring(0, equals).toLowerCase();
+                String value = equals < 0 ? "" : token.substring(equals + 1);
+                switch (key) {
+                    case "port" -> port = (int) parseRange("port", value, 1, 65535);
+                    case "concurrency" -> concurrency = ExportSettings.parseWorkers("concurrency", value);
+                    case "queue" -> queueMillis = parseRange("queue", value, 0, MAX_QUEUE_MILLIS);
+                    case "faceworkers" -> faceWorkers = ExportSettings.parseWorkers("faceWorkers", value);
+                    case "store" -> {
+                        if (value.isEmpty())
+                            throw new IllegalArgumentException("store needs a directory");
+                        store = value;
+                    }
+                    default -> throw new IllegalArgumentException("unknown option \"" + token + "\"");
+                }
+            }
+            return new HttpSettings(port, concurrency, queueMillis, faceWorkers, store);
+        }
+
+        private static long parseRange(String key, String value, long min, long max) {
+            try {
+                long parsed = Long.parseLong(value);
+                if (parsed >= min && parsed <= max)
+                    return parsed;
+            } catch (NumberFormatException ignored) {}
+            throw new IllegalArgumentException("invalid " + key + " \"" + value + "\" (expected: " + min + "-" + max + ")");
+        }
+    }
+
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        LiteralArgumentBuilder<CommandSourceStack> root = Commands.literal("lt-export-http")
+                .requires(source -> source.hasPermission(2))
+                .executes(context -> executeStatus(context.getSource()))
+                .then(Commands.literal("start")
+                        .then(Commands.argument("output_dir", StringArgumentType.string())
+                                .executes(context -> executeStart(
+                                        context.getSource(),
+                                        StringArgumentType.getString(context, "output_dir"),
+                                        ""))
+                                .then(Commands.argument("options", StringArgumentType.greedyString())
+                                        .executes(context -> executeStart(
+                                                context.getSource(),
+                                                StringArgumentType.getString(context, "output_dir"),
+                                                StringArgumentType.getString(context, "options"))))))
+                .then(Commands.literal("stop")
+                        .executes(context -> executeStop(context.getSource())))
+                .then(Commands.literal("status")
+                        .executes(context -> executeStatus(context.getSource())));
+        dispatcher.register(root);
+    }
+
+    /** Stops the endpoint, e.g. when the server is stopping. */
+    static synchronized void stop() {
+        if (endpoint != null)
+            endpoint.stop();
+        endpoint = null;
+    }
+
+    private static synchronized int executeStart(CommandSourceStack source, String outputDirArg, String optionsArg) {
+        if (endpoint != null) {
+            source.sendFailure(Component.literal("lt-export-http failed: already listening on port " + endpoint.port() + " (/lt-export-http stop)"));
+            return 0;
+        }
+
+        HttpSettings settings;
+        try {
+            settings = HttpSettings.parse(optionsArg);
+        } catch (IllegalArgumentException e) {
+            source.sendFailure(Component.literal("lt-export-http failed: " + e.getMessage()));
+            return 0;
+        }
+
+        MinecraftServer server = source.getServer();
+        Path outputDir = ExportPaths.resolve(server, outputDirArg);
+        Path storeDir = settings.store != null ? ExportPaths.resolve(server, settings.store) : null;
+        try {
+            Files.createDirectories(outputDir.resolve("textures"));
+            endpoint = Endpoint.start(outputDir, storeDir, settings);
+        } catch (Exception e) {
+            source.sendFailure(Component.literal("lt-export-http failed: " + e.getMessage()));
+            LittleTilesParityExporter.LOGGER.error("lt-export-http failed to start on port {}", settings.port, e);
+            return 0;
+        }
+
+        String line = "lt-export-http listening on http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" +
+                endpoint.port() + CONTEXT + "{debug,textures,gltf} -> " + outputDir +
+                " (concurrency=" + settings.concurrency + ", queue=" + settings.queueMillis + "ms)";
+        source.sendSuccess(() -> Component.literal(line), false);
+        LittleTilesParityExporter.LOGGER.info(line);
+        return 1;
+    }
+
+    private static synchronized int executeStop(CommandSourceStack source) {
+        if (endpoint == null) {
+            source.sendFailure(Component.literal("lt-export-http: not running"));
+            return 0;
+        }
+        String line = "lt-export-http stopped " + endpoint.describeCounts();
+        stop();
+        source.sendSuccess(() -> Component.literal(line), false);
+        return 1;
+    }
+
+    private static int executeStatus(CommandSourceStack source) {
+        Endpoint current = endpoint;
+        String line = current == null ? "lt-export-http: not running" : current.describe();
+        source.sendSuccess(() -> Component.literal(line), false);
+        return 1;
+    }
+
+    private static final class Endpoint {
+        private final HttpServer server;
+        private final ExecutorService executor;
+        private final Path outputDir;
+        private final HttpSettings settings;
+        private final Semaphore slots;
+        private final TextureResolver resolver;
+        private final ForkJoinPool facePool;
+        private final AtomicInteger served = new AtomicInteger();
+        private final AtomicInteger busy = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicLong nextRequestPrune = new AtomicLong();
+
+        private Endpoint(HttpServer server, ExecutorService executor, Path outputDir, HttpSettings settings, TextureResolver resolver) {
+            this.server = server;
+            this.executor = executor;
+            this.outputDir = outputDir;
+            this.settings = settings;
+            this.slots = new Semaphore(settings.concurrency);
+            this.resolver = resolver;
+            this.facePool = settings.faceWorkers > 1 ? new ForkJoinPool(settings.faceWorkers) : null;
+        }
+
+        static Endpoint start(Path outputDir, Path storeDir, HttpSettings settings) throws IOException {
+            HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), settings.port), 0);
+            ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+            Endpoint endpoint = new Endpoint(server, executor, outputDir, settings, TextureResolver.open(outputDir, storeDir));
+            endpoint.pruneRequests(Long.MAX_VALUE);
+            server.createContext(CONTEXT, endpoint::handle);
+            server.setExecutor(executor);
+            server.start();
+            return endpoint;
+        }
+
+        int port() {
+            return server.getAddress().getPort();
+        }
+
+        /**
+         * Lets requests in flight finish for up to a second, then saves the texture index and file manifest and
+         * deletes the request directories.
+         */
+        void stop() {
+            server.stop(1);
+            executor.shutdownNow();
+            if (facePool != null)
+                facePool.shutdownNow();
+            resolver.close();
+            pruneRequests(Long.MAX_VALUE);
+        }
+
+        /** Deletes the request directories last modified at least {@code ageMillis} ago. */
+        private void pruneRequests(long ageMillis) {
+            Path requestsDir = outputDir.resolve("requests");
+            if (!Files.isDirectory(requestsDir))
+                return;
+            long cutoff = ageMillis == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() - ageMillis;
+            try (Stream<Path> requests = Files.list(requestsDir)) {
+                for (Path requestDir : (Iterable<Path>) requests::iterator) {
+                    try {
+                        if (Files.getLastModifiedTime(requestDir).toMillis() <= cutoff)
+                            deleteTree(requestDir);
+                    } catch (IOException e) {
+                        LittleTilesParityExporter.LOGGER.warn("lt-export-http failed to delete {}: {}", requestDir, e.getMessage());
+                    }
+                }
+            } catch (IOException e) {
+                LittleTilesParityExporter.LOGGER.warn("lt-export-http failed to list {}: {}", requestsDir, e.getMessage());
+            }
+        }
+
+        /** Prunes expired request directories at most once per interval, from whichever request gets there first. */
+        private void pruneExpiredRequests() {
+            long now = System.currentTimeMillis();
+            long next = nextRequestPrune.get();
+            if (now >= next && nextRequestPrune.compareAndSet(next, now + REQUEST_PRUNE_INTERVAL_MILLIS))
+                pruneRequests(TimeUnit.MINUTES.toMillis(REQUEST_RETENTION_MINUTES));
+        }
+
+        private static void deleteTree(Path root) throws IOException {
+            try (Stream<Path> walk = Files.walk(root)) {
+                for (Path path : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator)
+                    Files.deleteIfExists(path);
+            }
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            long received = System.nanoTime();
+            try {
+                if (!isLoopbackRequest(exchange)) {
+                    sendText(exchange, 403, "only loopback Host and Origin headers are accepted");
+                    return;
+                }
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", "POST");
+                    sendText(exchange, 405, "use POST with SNBT as the request body");
+                    return;
+                }
+                Output output = Output.fromArg(exchange.getRequestURI().getPath().substring(CONTEXT.length()));
+                if (output == null) {
+                    sendText(exchange, 404, "unknown export, expected " + CONTEXT + "debug, " + CONTEXT + "textures or " + CONTEXT + "gltf");
+                    return;
+                }
+                String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+                if (contentLength != null && Long.parseLong(contentLength) > MAX_BODY_BYTES) {
+                    sendText(exchange, 413, "request body exceeds " + MAX_BODY_BYTES + " bytes");
+                    return;
+                }
+
+                String inputName = "input.snbt";
+                GeometryMode geometryMode = GeometryMode.CLIENT;
+                StringJoiner options = new StringJoiner(" ").add("outputs=" + output.id);
+                String query = exchange.getRequestURI().getRawQuery();
+                for (String parameter : query == null || query.isEmpty() ? new String[0] : query.split("&")) {
+                    int equals = parameter.indexOf('=');
+                    String key = URLDecoder.decode(equals < 0 ? parameter : parameter.substring(0, equals), StandardCharsets.UTF_8);
+                    String value = URLDecoder.decode(equals < 0 ? "" : parameter.substring(equals + 1), StandardCharsets.UTF_8);
+                    if (key.equals("name")) {
+                        // Names the report and the atlas pages, so it must stay a plain file name.
+                        if (!INPUT_NAME.matcher(value).matches()) {
+                            sendText(exchange, 400, "invalid name \"" + value + "\" (expected a file name)");
+                            return;
+                        }
+                        inputName = value;
+                    } else if (key.equals("geometry_mode")) {
+                        geometryMode = GeometryMode.fromArg(value);
+                        if (geometryMode == null) {
+                            sendText(exchange, 400, "invalid geometry_mode \"" + value + "\" (expected: client|server)");
+                            return;
+                        }
+                    } else if (REQUEST_OPTIONS.contains(key.toLowerCase()) && !value.isEmpty() && !value.contains(" ")) {
+                        options.add(key + "=" + value);
+                    } else {
+                        sendText(exchange, 400, "unknown parameter \"" + parameter + "\" (expected: name, geometry_mode, format, merge, atlas)");
+                        return;
+                    }
+                }
+                CombinedSettings exportSettings;
+                try {
+                    exportSettings = CombinedSettings.parse(geometryMode, options.toString());
+                } catch (IllegalArgumentException e) {
+                    sendText(exchange, 400, e.getMessage());
+                    return;
+                }
+
+                if (!slots.tryAcquire(settings.queueMillis, TimeUnit.MILLISECONDS)) {
+                    busy.incrementAndGet();
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    sendText(exchange, 503, "all " + settings.concurrency + " export slots are busy");
+                    return;
+                }
+                try {
+                    export(exchange, output, inputName, exportSettings, System.nanoTime() - received);
+                } finally {
+                    slots.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                sendText(exchange, 503, "endpoint is stopping");
+            } catch (NumberFormatException e) {
+                sendText(exchange, 400, "invalid Content-Length");
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private void export(HttpExchange exchange, Output output, String inputName, CombinedSettings exportSettings, long queueNanos) throws IOException {
+            ExportTimings timings = new ExportTimings();
+            byte[] body;
+            String contentType;
+            try {
+                // The body is parsed as it is received, so the parse phase includes the upload.
+                LoadedInput input;
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        new BoundedInputStream(exchange.getRequestBody(), MAX_BODY_BYTES),
+                        StandardCharsets.UTF_8))) {
+                    input = LoadedInput.load(Path.of(inputName), reader, timings);
+                }
+
+                switch (output) {
+                    case DEBUG -> {
+                        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                        Writer writer = new OutputStreamWriter(buffer, StandardCharsets.UTF_8);
+                        LtDebugExportCommand.streamReport(
+                                input,
+                                exchange.getRequestURI().toString(),
+                                exportSettings.debug,
+                                null,
+                                facePool,
+                                timings,
+                                writer);
+                        body = buffer.toByteArray();
+                        contentType = "application/json; charset=utf-8";
+                    }
+                    case TEXTURES -> {
+                        pruneExpiredRequests();
+                        // A directory per request keeps atlas pages of concurrent requests with the same name apart.
+                        Path requestDir = outputDir.resolve("requests").resolve(UUID.randomUUID().toString());
+                        TextureReport report = LtTextureExportCommand.buildReport(
+                                input,
+                                requestDir.resolve(LtTextureExportCommand.toOutputFileName(inputName)),
+                                outputDir.resolve("textures"),
+                                resolver,
+                                exportSettings.textures.atlas,
+                                timings);
+                        body = (report.json() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+                        contentType = "application/json; charset=utf-8";
+                    }
+                    case GLTF -> {
+                        body = LtGltfExportCommand.encodeGlb(input, exportSettings.gltf, timings);
+                        contentType = "model/gltf-binary";
+                    }
+                    default -> throw new IllegalStateException("unhandled output " + output);
+                }
+            } catch (BodyTooLargeException e) {
+                sendText(exchange, 413, e.getMessage());
+                return;
+            } catch (Exception e) {
+                // Malformed SNBT, an unloadable group or a structure without renderable faces.
+                LittleTilesParityExporter.LOGGER.warn("lt-export-http {} export failed for {}: {}", output.id, inputName, e.toString());
+                exchange.getResponseHeaders().set("Server-Timing", serverTiming(queueNanos, timings));
+                sendText(exchange, 422, output.id + " export failed: " + e.getMessage());
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.getResponseHeaders().set("Server-Timing", serverTiming(queueNanos, timings));
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+            served.incrementAndGet();
+        }
+
+        /**
+         * A browser always sends the page's {@code Host} (so a rebound domain name shows up here) and an
+         * {@code Origin} on cross-site POSTs; command line clients send a loopback host and no origin.
+         */
+        private static boolean isLoopbackRequest(HttpExchange exchange) {
+            String host = exchange.getRequestHeaders().getFirst("Host");
+            if (host == null || !isLoopbackHost(host))
+                return false;
+            String origin = exchange.getRequestHeaders().getFirst("Origin");
+            if (origin == null)
+                return true;
+            try {
+                String authority = URI.create(origin).getRawAuthority();
+                return authority != null && isLoopbackHost(authority);
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+
+        private static boolean isLoopbackHost(String authority) {
+            String host = authority.trim().toLowerCase();
+            int colon = host.lastIndexOf(':');
+            if (colon >= 0 && colon > host.lastIndexOf(']'))
+                host = host.substring(0, colon);
+            return LOOPBACK_HOSTS.contains(host) || host.equals(InetAddress.getLoopbackAddress().getHostAddress());
+        }
+
+        private static String serverTiming(long queueNanos, ExportTimings timings) {
+            StringBuilder out = new StringBuilder();
+            ExportTimings.appendServerTiming(out, "queue", queueNanos);
+            return out.append(", ").append(timings.toServerTiming()).toString();
+        }
+
+        private void sendText(HttpExchange exchange, int status, String message) throws IOException {
+            if (status != 503)
+                failed.incrementAndGet();
+            byte[] bytes = (message + "\n").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        String describeCounts() {
+            return "(served=" + served.get() + ", busy=" + busy.get() + ", failed=" + failed.get() + ")";
+        }
+
+        String describe() {
+            return "lt-export-http listening on port " + port() + " -> " + outputDir +
+                    " (concurrency=" + settings.concurrency + ", inFlight=" + (settings.concurrency - slots.availablePermits()) +
+                    ", served=" + served.get() + ", busy=" + busy.get() + ", failed=" + failed.get() + ")";
+        }
+    }
+
+    private static final class BodyTooLargeException extends IOException {
+        BodyTooLargeException(long limit) {
+            super("request body exceeds " + limit + " bytes");
+        }
+    }
+
+    /** Fails the read once more than {@code limit} bytes arrive, for bodies sent without a Content-Length. */
+    private static final class BoundedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0)
+                count(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0)
+                count(read);
+            return read;
+        }
+
+        private void count(int read) throws IOException {
+            count += read;
+            if (count > limit)
+                throw new BodyTooLargeException(limit);
+        }
+    }
+}
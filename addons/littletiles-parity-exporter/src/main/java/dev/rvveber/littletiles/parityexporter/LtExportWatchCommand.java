@@ -0,0 +1,425 @@
+package dev.rvveber.littletiles.parityexporter;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.mojang.brigadier.builder.RequiredArgumentBuilder;
+
+import dev.rvveber.littletiles.parityexporter.LtDebugExportCommand.GeometryMode;
+import dev.rvveber.littletiles.parityexporter.LtExportCommand.CombinedSettings;
+import dev.rvveber.littletiles.parityexporter.LtTextureExportCommand.TextureResolver;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.MinecraftServer;
+
+/**
+ * Watch-folder mode for {@code /lt-export}: exports each input file as soon as it is created or changed.
+ *
+ * Every watcher owns a daemon thread with a {@link WatchService} on its input directory. Create and modify
+ * events are debounced per file, so a file still being written is exported once it has been quiet for the
+ * debounce interval. Only those files go through the combined per-file path of {@code /lt-export}; the rest of
+ * the folder is never rescanned unless the watch service overflows. The export cache, texture resolver and face
+ * pool stay open for the watcher's lifetime, so later files start warm.
+ */
+public final class LtExportWatchCommand {
+
+    private static final long DEFAULT_DEBOUNCE_MILLIS = 750;
+    private static final long MAX_DEBOUNCE_MILLIS = 60_000;
+    private static final long IDLE_POLL_MILLIS = 1_000;
+
+    private static final AtomicInteger NEXT_WATCHER_ID = new AtomicInteger(1);
+    private static final Map<Integer, Watcher> WATCHERS = new ConcurrentSkipListMap<>();
+
+    private LtExportWatchCommand() {}
+
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        RequiredArgumentBuilder<CommandSourceStack, String> outputDir = Commands.argument("output_dir", StringArgumentType.string())
+                .executes(context -> executeStart(
+                        context.getSource(),
+                        StringArgumentType.getString(context, "input_dir"),
+                        StringArgumentType.getString(context, "output_dir"),
+                        "client",
+                        ""))
+                .then(Commands.argument("geometry_mode", StringArgumentType.word())
+                        .executes(context -> executeStart(
+                                context.getSource(),
+                                StringArgumentType.getString(context, "input_dir"),
+                                StringArgumentType.getString(context, "output_dir"),
+                                StringArgumentType.getString(context, "geometry_mode"),
+                                ""))
+                        .then(Commands.argument("options", StringArgumentType.greedyString())
+                                .executes(context -> executeStart(
+                                        context.getSource(),
+                                        StringArgumentType.getString(context, "input_dir"),
+                                        StringArgumentType.getString(context, "output_dir"),
+                                        StringArgumentType.getString(context, "geometry_mode"),
+                                        StringArgumentType.getString(context, "options")))));
+
+        LiteralArgumentBuilder<CommandSourceStack> root = Commands.literal("lt-export-watch")
+                .requires(source -> source.hasPermission(2))
+                .executes(context -> executeStatus(context.getSource()))
+                .then(Commands.literal("start")
+                        .then(Commands.argument("input_dir", StringArgumentType.string())
+                                .then(outputDir)))
+                .then(Commands.literal("stop")
+                        .executes(context -> executeStop(context.getSource(), -1))
+                        .then(Commands.argument("watch_id", IntegerArgumentType.integer(1))
+                                .executes(context -> executeStop(
+                                        context.getSource(),
+                                        IntegerArgumentType.getInteger(context, "watch_id")))))
+                .then(Commands.literal("status")
+                        .executes(context -> executeStatus(context.getSource())));
+        dispatcher.register(root);
+    }
+
+    /** Stops every watcher, e.g. when the server is stopping. */
+    static void stopAll() {
+        for (Watcher watcher : WATCHERS.values())
+            watcher.stop();
+        WATCHERS.clear();
+    }
+
+    private static int executeStart(
+            CommandSourceStack source,
+            String inputDirArg,
+            String outputDirArg,
+            String geometryModeArg,
+            String optionsArg) {
+        GeometryMode geometryMode = GeometryMode.fromArg(geometryModeArg);
+        if (geometryMode == null) {
+            source.sendFailure(Component.literal(
+                    "lt-export-watch failed: invalid geometry_mode \"" + geometryModeArg + "\" (expected: client|server)"));
+            return 0;
+        }
+
+        // debounce= belongs to the watcher; everything else is an /lt-export option.
+        long debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+        StringJoiner exportOptions = new StringJoiner(" ");
+        CombinedSettings settings;
+        try {
+            String options = optionsArg == null ? "" : optionsArg.trim();
+            for (String token : options.isEmpty() ? new String[0] : options.split("\\s+")) {
+                if (token.toLowerCase().startsWith("debounce="))
+                    debounceMillis = parseDebounce(token.substring("debounce=".length()));
+                else
+                    exportOptions.add(token);
+            }
+            settings = CombinedSettings.parse(geometryMode, exportOptions.toString());
+        } catch (IllegalArgumentException e) {
+            source.sendFailure(Component.literal("lt-export-watch failed: " + e.getMessage()));
+            return 0;
+        }
+
+        MinecraftServer server = source.getServer();
+        Path inputDir = ExportPaths.resolve(server, inputDirArg);
+        Path outputDir = ExportPaths.resolve(server, outputDirArg);
+        Path storeDir = settings.textures.store != null ? ExportPaths.resolve(server, settings.textures.store) : null;
+
+        // Reports written into the watched folder would come back as input events.
+        if (outputDir.equals(inputDir)) {
+            source.sendFailure(Component.literal("lt-export-watch failed: output_dir must differ from input_dir"));
+            return 0;
+        }
+        for (Watcher existing : WATCHERS.values()) {
+            if (existing.inputDir.equals(inputDir)) {
+                source.sendFailure(Component.literal("lt-export-watch failed: " + inputDir + " is already watched by #" + existing.id));
+                return 0;
+            }
+        }
+
+        Watcher watcher;
+        try {
+            if (!Files.isDirectory(inputDir)) {
+                source.sendFailure(Component.literal("lt-export-watch failed: input path is not a directory: " + inputDir));
+                return 0;
+            }
+            Files.createDirectories(outputDir);
+            watcher = new Watcher(NEXT_WATCHER_ID.getAndIncrement(), source, inputDir, outputDir, storeDir, settings, debounceMillis);
+        } catch (Exception e) {
+            source.sendFailure(Component.literal("lt-export-watch failed: " + e.getMessage()));
+            LittleTilesParityExporter.LOGGER.error("lt-export-watch failed to start for inputDir {}", inputDir, e);
+            return 0;
+        }
+
+        WATCHERS.put(watcher.id, watcher);
+        watcher.start();
+        int id = watcher.id;
+        source.sendSuccess(() -> Component.literal("lt-export-watch #" + id + " watching " + inputDir + " -> " + outputDir +
+                " (outputs=" + settings.describeOutputs() + ", debounce=" + watcher.debounceMillis + "ms; /lt-export-watch stop " + id + ")"), false);
+        return 1;
+    }
+
+    private static long parseDebounce(String value) {
+        try {
+            long millis = Long.parseLong(value);
+            if (millis >= 0 && millis <= MAX_DEBOUNCE_MILLIS)
+                return millis;
+        } catch (NumberFormatException ignored) {}
+        throw new IllegalArgumentException("invalid debounce \"" + value + "\" (expected: 0-" + MAX_DEBOUNCE_MILLIS + " ms)");
+    }
+
+    private static int executeStop(CommandSourceStack source, int watchId) {
+        List<Watcher> targets = new ArrayList<>();
+        if (watchId > 0) {
+            Watcher watcher = WATCHERS.get(watchId);
+            if (watcher == null) {
+                source.sendFailure(Component.literal("lt-export-watch: unknown watcher #" + watchId));
+                return 0;
+            }
+            targets.add(watcher);
+        } else {
+            targets.addAll(WATCHERS.values());
+        }
+        if (targets.isEmpty()) {
+            source.sendFailure(Component.literal("lt-export-watch: no watcher to stop"));
+            return 0;
+        }
+
+        for (Watcher watcher : targets) {
+            watcher.stop();
+            WATCHERS.remove(watcher.id);
+            String line = "lt-export-watch #" + watcher.id + " stopped " + watcher.describeCounts();
+            source.sendSuccess(() -> Component.literal(line), false);
+        }
+        return 1;
+    }
+
+    private static int executeStatus(CommandSourceStack source) {
+        if (WATCHERS.isEmpty()) {
+            source.sendSuccess(() -> Component.literal("lt-export-watch: no active watchers"), false);
+            return 1;
+        }
+        for (Watcher watcher : WATCHERS.values()) {
+            String line = watcher.describe();
+            source.sendSuccess(() -> Component.literal(line), false);
+        }
+        return 1;
+    }
+
+    private static final class Watcher {
+        final int id;
+        final Path inputDir;
+        final Path outputDir;
+        final long debounceMillis;
+        private final CommandSourceStack source;
+        private final Path storeDir;
+        private final CombinedSettings settings;
+        private final WatchService watchService;
+        private final Thread thread;
+        private final AtomicInteger exported = new AtomicInteger();
+        private final AtomicInteger unchanged = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private volatile int pendingFiles;
+        private volatile String lastFile;
+        private volatile boolean stopRequested;
+
+        Watcher(
+                int id,
+                CommandSourceStack source,
+                Path inputDir,
+                Path outputDir,
+                Path storeDir,
+                CombinedSettings settings,
+                long debounceMillis) throws IOException {
+            this.id = id;
+            this.source = source;
+            this.inputDir = inputDir;
+            this.outputDir = outputDir;
+            this.storeDir = storeDir;
+            this.settings = settings;
+            this.debounceMillis = debounceMillis;
+            this.watchService = inputDir.getFileSystem().newWatchService();
+            inputDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            this.thread = new Thread(this::run, "lt-export-watch-" + id);
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        /** Closing the watch service wakes the watcher thread; a file already being exported still finishes. */
+        void stop() {
+            stopRequested = true;
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LittleTilesParityExporter.LOGGER.warn("lt-export-watch #{} failed to close its watch service", id, e);
+            }
+        }
+
+        private void run() {
+            ExportCache cache = ExportCache.open(outputDir, "lt-export", settings.cacheKey(), settings.debug.reuseCache);
+            Path texturesRoot = outputDir.resolve("textures");
+            TextureResolver resolver = null;
+            ForkJoinPool facePool = settings.debug.faceWorkers > 1 ? new ForkJoinPool(settings.debug.faceWorkers) : null;
+            // File -> nanoTime of its latest event; a file is exported once it has been quiet for the debounce interval.
+            Map<Path, Long> pending = new HashMap<>();
+            long debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+
+            try {
+                if (settings.outputs.contains(LtExportCommand.Output.TEXTURES)) {
+                    Files.createDirectories(texturesRoot);
+                    resolver = TextureResolver.open(outputDir, storeDir);
+                }
+                while (!stopRequested) {
+                    WatchKey key = watchService.poll(nextWaitMillis(pending, debounceNanos), TimeUnit.MILLISECONDS);
+                    if (key != null) {
+                        collectEvents(key, pending);
+                        if (!key.reset()) {
+                            sendFailure("lt-export-watch #" + id + " stopped: " + inputDir + " is no longer accessible");
+                            break;
+                        }
+                    }
+
+                    List<Path> due = takeDue(pending, debounceNanos);
+                    pendingFiles = pending.size();
+                    if (due.isEmpty())
+                        continue;
+                    for (Path inputPath : due) {
+                        if (stopRequested)
+                            break;
+                        exportFile(inputPath, texturesRoot, resolver, facePool, cache);
+                    }
+                    LtDebugExportCommand.saveCache(cache, outputDir);
+                    if (resolver != null)
+                        resolver.save();
+                }
+            } catch (ClosedWatchServiceException | InterruptedException e) {
+                // Stopped.
+            } catch (Exception e) {
+                sendFailure("lt-export-watch #" + id + " stopped: " + e.getMessage());
+                LittleTilesParityExporter.LOGGER.error("lt-export-watch #{} failed", id, e);
+            } finally {
+                if (facePool != null)
+                    facePool.shutdownNow();
+                LtDebugExportCommand.saveCache(cache, outputDir);
+                if (resolver != null)
+                    resolver.close();
+                WATCHERS.remove(id);
+            }
+        }
+
+        private void collectEvents(WatchKey key, Map<Path, Long> pending) throws IOException {
+            long now = System.nanoTime();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Events were dropped; queue every file and let the export cache skip the unchanged ones.
+                    try (Stream<Path> files = Files.list(inputDir)) {
+                        files.filter(Files::isRegularFile).forEach(path -> pending.put(path, now));
+                    }
+                    continue;
+                }
+                if (event.context() instanceof Path name)
+                    pending.put(inputDir.resolve(name), now);
+            }
+        }
+
+        private static long nextWaitMillis(Map<Path, Long> pending, long debounceNanos) {
+            if (pending.isEmpty())
+                return IDLE_POLL_MILLIS;
+            long oldest = Long.MAX_VALUE;
+            for (long eventNanos : pending.values())
+                oldest = Math.min(oldest, eventNanos);
+            long remaining = oldest + debounceNanos - System.nanoTime();
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining) + 1);
+        }
+
+        /** Removes and returns the files that have been quiet for the debounce interval, sorted by name. */
+        private static List<Path> takeDue(Map<Path, Long> pending, long debounceNanos) {
+            long now = System.nanoTime();
+            List<Path> due = new ArrayList<>();
+            for (Iterator<Map.Entry<Path, Long>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Path, Long> entry = it.next();
+                if (now - entry.getValue() < debounceNanos)
+                    continue;
+                it.remove();
+                due.add(entry.getKey());
+            }
+            due.sort(null);
+            return due;
+        }
+
+        private void exportFile(
+                Path inputPath,
+                Path texturesRoot,
+                TextureResolver resolver,
+                ForkJoinPool facePool,
+                ExportCache cache) {
+            // Deleted or renamed away before the debounce ran out.
+            if (!Files.isRegularFile(inputPath))
+                return;
+            String fileName = inputPath.getFileName().toString();
+            lastFile = fileName;
+            long started = System.nanoTime();
+            try {
+                ExportCache.Probe probe = cache.probe(inputPath);
+                if (probe.hit()) {
+                    unchanged.incrementAndGet();
+                    return;
+                }
+                List<Path> outputs = new ArrayList<>();
+                ExportTimings timings = new ExportTimings();
+                cache.record(probe, outputs, LtExportCommand.processSingleFile(
+                        inputPath, outputDir, texturesRoot, resolver, facePool, settings, timings, outputs));
+                exported.incrementAndGet();
+                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+                sendSuccess("lt-export-watch #" + id + ": exported " + fileName + " in " + millis + " ms (" + outputs.size() + " outputs)");
+            } catch (Exception e) {
+                // A half-written file fails here and is exported again on its next modify event.
+                failed.incrementAndGet();
+                sendFailure("lt-export-watch #" + id + ": " + fileName + " failed: " + e.getMessage());
+                LittleTilesParityExporter.LOGGER.error("lt-export-watch #{} failed for input {}", id, inputPath, e);
+            }
+        }
+
+        String describeCounts() {
+            return "(exported=" + exported.get() + ", unchanged=" + unchanged.get() + ", failed=" + failed.get() + ")";
+        }
+
+        String describe() {
+            return "lt-export-watch #" + id + " watching " + inputDir + " -> " + outputDir +
+                    " (outputs=" + settings.describeOutputs() + ", debounce=" + debounceMillis + "ms" +
+                    ", exported=" + exported.get() + ", unchanged=" + unchanged.get() + ", failed=" + failed.get() +
+                    ", pending=" + pendingFiles + (lastFile != null ? ", last=" + lastFile : "") + ")";
+        }
+
+        private void sendSuccess(String message) {
+            runOnServerThread(() -> source.sendSuccess(() -> Component.literal(message), false));
+        }
+
+        private void sendFailure(String message) {
+            runOnServerThread(() -> source.sendFailure(Component.literal(message)));
+        }
+
+        private void runOnServerThread(Runnable runnable) {
+            MinecraftServer server = source.getServer();
+            if (server != null)
+                server.execute(runnable);
+            else
+                runnable.run();
+        }
+    }
+}
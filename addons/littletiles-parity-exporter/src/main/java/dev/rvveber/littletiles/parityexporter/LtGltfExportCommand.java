@@ -0,0 +1,997 @@
+package dev.rvveber.littletiles.parityexporter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+
+import dev.rvveber.littletiles.parityexporter.LtDebugExportCommand.GeometryMode;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.MinecraftServer;
+import team.creative.creativecore.common.util.math.base.Axis;
+import team.creative.creativecore.common.util.math.base.Facing;
+import team.creative.creativecore.common.util.math.geo.VectorFan;
+import team.creative.creativecore.common.util.math.vec.Vec3f;
+import team.creative.littletiles.common.block.little.tile.LittleTile;
+import team.creative.littletiles.common.grid.LittleGrid;
+import team.creative.littletiles.common.math.box.LittleBox;
+import team.creative.littletiles.common.math.box.LittleTransformableBox;
+import team.creative.littletiles.common.math.box.LittleTransformableBox.VectorFanFaceCache;
+
+/**
+ * Writes glTF 2.0 ({@code .gltf} + {@code .bin}) straight from mod-side face states.
+ *
+ * Faces are evaluated with the same occlusion rules as {@code /lt-debug-export}; every renderable
+ * face becomes geometry, grouped into one primitive per {@code (blockState, color)} material.
+ * Textures are not bound here: materials carry the block state in {@code extras} so the texture
+ * export can be joined in later.
+ */
+public final class LtGltfExportCommand {
+
+    private static final int ARRAY_BUFFER = 34962;
+    private static final int ELEMENT_ARRAY_BUFFER = 34963;
+    private static final int COMPONENT_FLOAT = 5126;
+    private static final int COMPONENT_UNSIGNED_SHORT = 5123;
+    private static final int COMPONENT_UNSIGNED_INT = 5125;
+    private static final double MEGABYTE = 1024.0 * 1024.0;
+    private static final int GLB_MAGIC = 0x46546C67;
+    private static final int GLB_CHUNK_JSON = 0x4E4F534A;
+    private static final int GLB_CHUNK_BIN = 0x004E4942;
+
+    /** Per-facing UV axes, matching the standalone converter's default axis-face basis. */
+    private static final float[][] UV_BASIS_U = {
+            { 0, 0, 1 },
+            { 0, 0, 1 },
+            { -1, 0, 0 },
+            { 1, 0, 0 },
+            { 0, 0, 1 },
+            { 0, 0, -1 } };
+    private static final float[][] UV_BASIS_V = {
+            { -1, 0, 0 },
+            { -1, 0, 0 },
+            { 0, -1, 0 },
+            { 0, -1, 0 },
+            { 0, -1, 0 },
+            { 0, -1, 0 } };
+
+    static final class GltfSettings {
+        final GeometryMode geometryMode;
+        final boolean merge;
+
+        private GltfSettings(GeometryMode geometryMode, boolean merge) {
+            this.geometryMode = geometryMode;
+            this.merge = merge;
+        }
+
+        /** Parses space-separated {@code key=value} options; currently only {@code merge=true|false}. */
+        static GltfSettings parse(GeometryMode geometryMode, String optionsArg) {
+            boolean merge = true;
+            String options = optionsArg == null ? "" : optionsArg.trim();
+            for (String token : options.isEmpty() ? new String[0] : options.split("\\s+")) {
+                int equals = token.indexOf('=');
+                String key = equals < 0 ? token : token.substring(0, equals).toLowerCase();
+                String value = equals < 0 ? "" : token.substring(equals + 1).toLowerCase();
+                if (!key.equals("merge"))
+                    throw new IllegalArgumentException("unknown option \"" + token + "\"");
+                merge = switch (value) {
+                    case "true", "on" -> true;
+                    case "false", "off" -> false;
+                    default -> throw new IllegalArgumentException("invalid merge \"" + value + "\" (expected: true|false)");
+                };
+            }
+            return new GltfSettings(geometryMode, merge);
+        }
+    }
+
+    private LtGltfExportCommand() {}
+
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        LiteralArgumentBuilder<CommandSourceStack> root = Commands.literal("lt-gltf-export")
+                .requires(source -> source.hasPermission(2))
+                .then(Commands.argument("input_dir", StringArgumentType.string())
+                        .then(Commands.argument("output_dir", StringArgumentType.string())
+                                .executes(context -> executeBatch(
+                                        context.getSource(),
+                                        StringArgumentType.getString(context, "input_dir"),
+                                        StringArgumentType.getString(context, "output_dir"),
+                                        "client",
+                                        ""))
+                                .then(Commands.argument("geometry_mode", StringArgumentType.word())
+                                        .executes(context -> executeBatch(
+                                                context.getSource(),
+                                                StringArgumentType.getString(context, "input_dir"),
+                                                StringArgumentType.getString(context, "output_dir"),
+                                                StringArgumentType.getString(context, "geometry_mode"),
+                                                ""))
+                                        .then(Commands.argument("options", StringArgumentType.greedyString())
+                                                .executes(context -> executeBatch(
+                                                        context.getSource(),
+                                                        StringArgumentType.getString(context, "input_dir"),
+                                                        StringArgumentType.getString(context, "output_dir"),
+                                                        StringArgumentType.getString(context, "geometry_mode"),
+                                                        StringArgumentType.getString(context, "options")))))));
+        dispatcher.register(root);
+    }
+
+    private static int executeBatch(
+            CommandSourceStack source,
+            String inputDirArg,
+            String outputDirArg,
+            String geometryModeArg,
+            String optionsArg) {
+        GeometryMode geometryMode = GeometryMode.fromArg(geometryModeArg);
+        if (geometryMode == null) {
+            source.sendFailure(Component.literal(
+                    "lt-gltf-export failed: invalid geometry_mode \"" + geometryModeArg + "\" (expected: client|server)"));
+            return 0;
+        }
+        GltfSettings settings;
+        try {
+            settings = GltfSettings.parse(geometryMode, optionsArg);
+        } catch (IllegalArgumentException e) {
+            source.sendFailure(Component.literal("lt-gltf-export failed: " + e.getMessage()));
+            return 0;
+        }
+
+        MinecraftServer server = source.getServer();
+        Path inputDir = ExportPaths.resolve(server, inputDirArg);
+        Path outputDir = ExportPaths.resolve(server, outputDirArg);
+
+        try {
+            if (!Files.isDirectory(inputDir)) {
+                source.sendFailure(Component.literal("lt-gltf-export failed: input path is not a directory: " + inputDir));
+                return 0;
+            }
+            Files.createDirectories(outputDir);
+
+            List<Path> inputFiles;
+            try (Stream<Path> stream = Files.list(inputDir)) {
+                inputFiles = stream
+                        .filter(Files::isRegularFile)
+                        .sorted(Comparator.comparing(path -> path.getFileName().toString()))
+                        .toList();
+            }
+
+            if (inputFiles.isEmpty()) {
+                source.sendFailure(Component.literal("lt-gltf-export failed: input directory has no files: " + inputDir));
+                return 0;
+            }
+
+            ExportJobs.submit(source, "lt-gltf-export", inputFiles.size(),
+                    job -> runBatch(job, inputFiles, outputDir, settings));
+            return 1;
+        } catch (Exception e) {
+            source.sendFailure(Component.literal("lt-gltf-export batch failed: " + e.getMessage()));
+            LittleTilesParityExporter.LOGGER.error("lt-gltf-export batch failed for inputDir {}", inputDir, e);
+            return 0;
+        }
+    }
+
+    private static void runBatch(ExportJobs.Job job, List<Path> inputFiles, Path outputDir, GltfSettings settings) {
+        int ok = 0;
+        int failed = 0;
+        int cancelled = 0;
+        long totalFaces = 0;
+        long totalQuads = 0;
+        long totalTriangles = 0;
+        long totalBytes = 0;
+        long writtenBytes = 0;
+        long writeNanos = 0;
+        MemoryWatermark largestHeap = null;
+        String largestHeapFile = null;
+        long largestPeakRise = 0;
+        long largestDirect = 0;
+        List<String> failures = new ArrayList<>();
+        ExportTimings.Rollup timings = new ExportTimings.Rollup();
+
+        for (Path inputPath : inputFiles) {
+            if (job.isCancelRequested()) {
+                cancelled++;
+                continue;
+            }
+            try {
+                GltfProcessResult result = processSingleFile(inputPath, outputDir, settings);
+                ok++;
+                totalFaces += result.faces;
+                totalQuads += result.quads;
+                totalTriangles += result.triangles;
+                totalBytes += result.binaryBytes;
+                writtenBytes += result.writtenBytes;
+                writeNanos += result.writeNanos;
+                String fileName = inputPath.getFileName().toString();
+                LittleTilesParityExporter.LOGGER.info("lt-gltf-export {}: {}", fileName, result.memory.describe());
+                if (largestHeap == null || result.memory.heapAfterEncode() > largestHeap.heapAfterEncode()) {
+                    largestHeap = result.memory;
+                    largestHeapFile = fileName;
+                }
+                largestPeakRise = Math.max(largestPeakRise, result.memory.heapPeakRise());
+                largestDirect = Math.max(largestDirect, result.memory.directAfterEncode());
+                timings.record(fileName, result.timings);
+            } catch (Exception e) {
+                failed++;
+                failures.add(inputPath.getFileName() + ": " + e.getMessage());
+                LittleTilesParityExporter.LOGGER.error("lt-gltf-export failed for input {}", inputPath, e);
+            } finally {
+                job.fileCompleted();
+            }
+        }
+
+        String summary = "lt-gltf-export processed " + (inputFiles.size() - cancelled) + " files to " + outputDir +
+                " (ok=" + ok + ", failed=" + failed +
+                ", faces=" + totalFaces +
+                ", quads=" + totalQuads +
+                ", triangles=" + totalTriangles +
+                ", binaryBytes=" + totalBytes +
+                ", geometryMode=" + settings.geometryMode.id +
+                ", merge=" + settings.merge +
+                (cancelled > 0 ? ", cancelled=" + cancelled : "") + ")";
+        job.sendSuccess(summary);
+        if (!timings.isEmpty()) {
+            job.sendSuccess("  " + timings.describeFiles());
+            job.sendSuccess("  " + timings.describePhases());
+            double writeSeconds = writeNanos / 1_000_000_000.0;
+            job.sendSuccess(String.format(Locale.ROOT,
+                    "  memory: heapAfterEncode max=%.1fMB (%s), heapPeakRise max=%.1fMB, directAfterEncode max=%.1fMB, write=%.1fMB/s",
+                    largestHeap.heapAfterEncode() / MEGABYTE,
+                    largestHeapFile,
+                    largestPeakRise / MEGABYTE,
+                    largestDirect / MEGABYTE,
+                    writeSeconds > 0 ? writtenBytes / MEGABYTE / writeSeconds : 0));
+        }
+
+        if (!failures.isEmpty()) {
+            int maxLines = Math.min(5, failures.size());
+            for (int i = 0; i < maxLines; i++)
+                job.sendFailure("  - " + failures.get(i));
+            if (failures.size() > maxLines)
+                job.sendFailure("  ... and " + (failures.size() - maxLines) + " more failures");
+        }
+    }
+
+    private static GltfProcessResult processSingleFile(Path inputPath, Path outputDir, GltfSettings settings) throws Exception {
+        ExportTimings timings = new ExportTimings();
+        return writeGltf(LoadedInput.load(inputPath, timings), outputDir, settings, timings);
+    }
+
+    /** Builds the mesh of an already loaded input and writes {@code <basename>.gltf} and {@code <basename>.bin}. */
+    static GltfProcessResult writeGltf(LoadedInput input, Path outputDir, GltfSettings settings, ExportTimings timings) throws IOException {
+        long heapPeaksBefore = MemoryWatermark.heapPoolPeaks();
+        MeshBuilder mesh = buildMesh(input, settings, timings);
+
+        String baseName = ExportPaths.baseName(input.inputPath().getFileName().toString());
+        Path gltfPath = outputDir.resolve(baseName + ".gltf");
+        Path binPath = outputDir.resolve(baseName + ".bin");
+        EncodedGltf encoded = mesh.encode(binPath.getFileName().toString());
+        timings.lap(ExportTimings.ENCODE);
+
+        MemoryWatermark memory = MemoryWatermark.afterEncode(heapPeaksBefore);
+
+        byte[] json = encoded.json.getBytes(StandardCharsets.UTF_8);
+        writeAtomically(binPath, encoded.binary);
+        writeAtomically(gltfPath, ByteBuffer.wrap(json));
+        long writeNanos = timings.lap(ExportTimings.WRITE);
+
+        return new GltfProcessResult(
+                mesh.faces,
+                mesh.quads,
+                mesh.triangles(),
+                encoded.binaryLength,
+                (long) encoded.binaryLength + json.length,
+                writeNanos,
+                memory,
+                timings);
+    }
+
+    /**
+     * Builds the mesh of an already loaded input as one binary glTF ({@code .glb}): the same JSON as
+     * {@link #writeGltf}, with the buffer embedded as the BIN chunk instead of a {@code .bin} uri.
+     */
+    static byte[] encodeGlb(LoadedInput input, GltfSettings settings, ExportTimings timings) throws IOException {
+        MeshBuilder mesh = buildMesh(input, settings, timings);
+        EncodedGltf encoded = mesh.encode(null);
+        byte[] json = encoded.json.getBytes(StandardCharsets.UTF_8);
+        int jsonLength = align4(json.length);
+        int binaryLength = align4(encoded.binaryLength);
+
+        ByteBuffer glb = ByteBuffer.allocate(12 + 8 + jsonLength + 8 + binaryLength).order(ByteOrder.LITTLE_ENDIAN);
+        glb.putInt(GLB_MAGIC).putInt(2).putInt(glb.capacity());
+        glb.putInt(jsonLength).putInt(GLB_CHUNK_JSON).put(json);
+        // JSON chunks are padded with spaces, binary chunks with zeros.
+        for (int i = json.length; i < jsonLength; i++)
+            glb.put((byte) ' ');
+        glb.putInt(binaryLength).putInt(GLB_CHUNK_BIN);
+        for (ByteBuffer chunk : encoded.binary)
+            glb.put(chunk.duplicate());
+        timings.lap(ExportTimings.ENCODE);
+        return glb.array();
+    }
+
+    private static MeshBuilder buildMesh(LoadedInput input, GltfSettings settings, ExportTimings timings) {
+        MeshBuilder mesh = new MeshBuilder(settings.merge);
+        LtDebugExportCommand.forEachRenderableFace(input.root(), settings.geometryMode, mesh::addFace);
+        timings.lap(ExportTimings.FACE_EVALUATION);
+        mesh.flushPlanes();
+        timings.lap(ExportTimings.FACE_MERGE);
+        if (mesh.vertices() == 0)
+            throw new IllegalStateException("no renderable faces");
+        return mesh;
+    }
+
+    /** Writes {@code chunks} with one gathering channel write (repeated only if the OS writes short), then renames into place. */
+    private static void writeAtomically(Path path, ByteBuffer... chunks) throws IOException {
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(
+                    tempPath,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                long remaining = 0;
+                for (ByteBuffer chunk : chunks)
+                    remaining += chunk.remaining();
+                while (remaining > 0)
+                    remaining -= channel.write(chunks);
+            }
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    record GltfProcessResult(
+            int faces,
+            int quads,
+            long triangles,
+            long binaryBytes,
+            long writtenBytes,
+            long writeNanos,
+            MemoryWatermark memory,
+            ExportTimings timings) {
+
+        /** Summary counters, as recorded in the export cache. */
+        JsonObject stats() {
+            JsonObject out = new JsonObject();
+            out.addProperty("faces", faces);
+            out.addProperty("quads", quads);
+            out.addProperty("triangles", triangles);
+            out.addProperty("binaryBytes", binaryBytes);
+            return out;
+        }
+    }
+
+    private record EncodedGltf(String json, ByteBuffer[] binary, int binaryLength) {}
+
+    private record MaterialKey(String blockState, int color) {}
+
+    /** Faces that can be merged: same material, same facing, same plane, same grid. */
+    private record PlaneKey(MaterialKey material, Facing facing, int grid, int plane) {}
+
+    /**
+     * Collects renderable faces into one primitive per material. Transformable boxes queue the axis
+     * and tilted fans of their face cache. Axis-aligned faces are collected per plane and merged into
+     * maximal rectangles unless merging is off. {@link #flushPlanes()} then counts the vertices and
+     * indices of every primitive, drops primitives that ended up without geometry, allocates the
+     * buffers of the rest at that exact size, and emits the fans followed by the quads.
+     */
+    private static final class MeshBuilder {
+        final boolean merge;
+        final Map<MaterialKey, Primitive> primitives = new LinkedHashMap<>();
+        final Map<PlaneKey, IntList> planes = new LinkedHashMap<>();
+        int faces;
+        int quads;
+
+        MeshBuilder(boolean merge) {
+            this.merge = merge;
+        }
+
+        void addFace(LittleTile tile, LittleGrid grid, LittleBox box, Facing facing) {
+            faces++;
+            MaterialKey material = new MaterialKey(tile.getBlockName(), tile.color);
+            Primitive primitive = primitives.computeIfAbsent(material, key -> new Primitive(key));
+
+            if (box instanceof LittleTransformableBox transformable) {
+                double scale = 1.0 / grid.count;
+                VectorFanFaceCache cache = transformable.requestCache().get(facing);
+                if (cache == null)
+                    return;
+                for (VectorFan fan : cache.axisStrips)
+                    primitive.queueFan(fan, facing, scale);
+                for (Object tilted : cache.tiltedSorted())
+                    if (tilted instanceof VectorFan fan)
+                        primitive.queueFan(fan, facing, scale);
+                return;
+            }
+
+            int plane = facing.positive ? box.getMax(facing.axis) : box.getMin(facing.axis);
+            IntList rects = planes.computeIfAbsent(new PlaneKey(material, facing, grid.count, plane), key -> new IntList());
+            rects.add(box.getMin(facing.one()));
+            rects.add(box.getMax(facing.one()));
+            rects.add(box.getMin(facing.two()));
+            rects.add(box.getMax(facing.two()));
+        }
+
+        /** Sizes every primitive's buffers, then emits the queued fans and the axis-aligned faces, one plane at a time. */
+        void flushPlanes() {
+            Map<PlaneKey, IntList> emittedPlanes = new LinkedHashMap<>();
+            for (Map.Entry<PlaneKey, IntList> entry : planes.entrySet()) {
+                IntList emitted = merge ? PlaneMerger.merge(entry.getValue()) : entry.getValue();
+                emittedPlanes.put(entry.getKey(), emitted);
+                primitives.get(entry.getKey().material).countQuads(emitted.size / 4);
+            }
+            planes.clear();
+            // Materials whose faces had no face cache or only degenerate fans would become empty accessors.
+            primitives.values().removeIf(primitive -> primitive.plannedVertices == 0);
+            for (Primitive primitive : primitives.values())
+                primitive.allocateAndEmitFans();
+
+            for (Map.Entry<PlaneKey, IntList> entry : emittedPlanes.entrySet()) {
+                PlaneKey key = entry.getKey();
+                Primitive primitive = primitives.get(key.material);
+                IntList emitted = entry.getValue();
+                for (int i = 0; i < emitted.size; i += 4)
+                    primitive.addQuad(
+                            key.facing,
+                            key.plane,
+                            emitted.data[i],
+                            emitted.data[i + 1],
+                            emitted.data[i + 2],
+                            emitted.data[i + 3],
+                            1.0 / key.grid);
+                quads += emitted.size / 4;
+            }
+        }
+
+        long vertices() {
+            long out = 0;
+            for (Primitive primitive : primitives.values())
+                out += primitive.vertexCount();
+            return out;
+        }
+
+        long triangles() {
+            long out = 0;
+            for (Primitive primitive : primitives.values())
+                out += primitive.indexCount() / 3;
+            return out;
+        }
+
+        /** {@code binUri} is null for a binary glTF, whose buffer is the embedded BIN chunk. */
+        EncodedGltf encode(String binUri) throws IOException {
+            BinaryLayout layout = new BinaryLayout();
+            for (Primitive primitive : primitives.values())
+                primitive.layout(layout);
+
+            StringWriter json = new StringWriter();
+            try (JsonWriter out = new JsonWriter(json)) {
+                out.setIndent("  ");
+                out.setHtmlSafe(false);
+                writeJson(out, binUri, layout.byteLength);
+            }
+            return new EncodedGltf(json + System.lineSeparator(), layout.chunks.toArray(ByteBuffer[]::new), layout.byteLength);
+        }
+
+        private void writeJson(JsonWriter out, String binUri, int byteLength) throws IOException {
+            out.beginObject();
+            out.name("asset").beginObject();
+            out.name("version").value("2.0");
+            out.name("generator").value(LittleTilesParityExporter.MOD_ID);
+            out.endObject();
+            out.name("scene").value(0);
+            out.name("scenes").beginArray().beginObject();
+            out.name("nodes").beginArray().value(0).endArray();
+            out.endObject().endArray();
+            out.name("nodes").beginArray().beginObject();
+            out.name("mesh").value(0);
+            out.name("name").value("LittleTilesRoot");
+            out.endObject().endArray();
+
+            out.name("meshes").beginArray().beginObject();
+            out.name("name").value("LittleTilesMesh");
+            out.name("primitives").beginArray();
+            int materialIndex = 0;
+            for (Primitive primitive : primitives.values()) {
+                out.beginObject();
+                out.name("attributes").beginObject();
+                out.name("POSITION").value(primitive.positionAccessor);
+                out.name("NORMAL").value(primitive.positionAccessor + 1);
+                out.name("TEXCOORD_0").value(primitive.positionAccessor + 2);
+                out.endObject();
+                out.name("indices").value(primitive.positionAccessor + 3);
+                out.name("material").value(materialIndex++);
+                out.endObject();
+            }
+            out.endArray();
+            out.endObject().endArray();
+
+            out.name("materials").beginArray();
+            for (Primitive primitive : primitives.values())
+                primitive.writeMaterial(out);
+            out.endArray();
+
+            out.name("buffers").beginArray().beginObject();
+            if (binUri != null)
+                out.name("uri").value(binUri);
+            out.name("byteLength").value(byteLength);
+            out.endObject().endArray();
+
+            out.name("bufferViews").beginArray();
+            for (Primitive primitive : primitives.values())
+                primitive.writeBufferViews(out);
+            out.endArray();
+
+            out.name("accessors").beginArray();
+            int bufferView = 0;
+            for (Primitive primitive : primitives.values()) {
+                primitive.writeAccessors(out, bufferView);
+                bufferView += 4;
+            }
+            out.endArray();
+            out.endObject();
+        }
+    }
+
+    /**
+     * The shared binary buffer as an ordered list of chunks for a gathering write. Every chunk
+     * starts 4-byte aligned; zero padding chunks are inserted where needed.
+     */
+    private static final class BinaryLayout {
+        final List<ByteBuffer> chunks = new ArrayList<>();
+        int byteLength;
+        int accessors;
+
+        int append(ByteBuffer chunk) {
+            int padding = align4(byteLength) - byteLength;
+            if (padding > 0) {
+                chunks.add(ByteBuffer.allocate(padding));
+                byteLength += padding;
+            }
+            int offset = byteLength;
+            chunks.add(chunk);
+            byteLength += chunk.remaining();
+            return offset;
+        }
+    }
+
+    private record QueuedFan(VectorFan fan, Facing facing, double scale) {}
+
+    private static final class Primitive {
+        final MaterialKey material;
+        final List<QueuedFan> fans = new ArrayList<>();
+        int plannedVertices;
+        int plannedIndices;
+        DirectBuffer positions;
+        DirectBuffer normals;
+        DirectBuffer uvs;
+        DirectBuffer indices;
+        final float[] min = { Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY };
+        final float[] max = { Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY };
+        int positionAccessor;
+        int positionOffset;
+        int normalOffset;
+        int uvOffset;
+        int indexOffset;
+        int indexByteLength;
+
+        Primitive(MaterialKey material) {
+            this.material = material;
+        }
+
+        void queueFan(VectorFan fan, Facing facing, double scale) {
+            int count = fan.count();
+            if (count < 3)
+                return;
+            fans.add(new QueuedFan(fan, facing, scale));
+            plannedVertices += count;
+            plannedIndices += (count - 2) * 3;
+        }
+
+        void countQuads(int quads) {
+            plannedVertices += quads * 4;
+            plannedIndices += quads * 6;
+        }
+
+        /** Allocates the buffers for every vertex and index counted so far, then emits the queued fans. */
+        void allocateAndEmitFans() {
+            positions = new DirectBuffer(plannedVertices * 3 * Float.BYTES);
+            normals = new DirectBuffer(plannedVertices * 3 * Float.BYTES);
+            uvs = new DirectBuffer(plannedVertices * 2 * Float.BYTES);
+            indices = new DirectBuffer(plannedIndices * Integer.BYTES);
+            for (QueuedFan queued : fans)
+                addFan(queued.fan(), queued.facing(), queued.scale());
+            fans.clear();
+        }
+
+        int vertexCount() {
+            return positions.size() / (3 * Float.BYTES);
+        }
+
+        int indexCount() {
+            return indices.size() / Integer.BYTES;
+        }
+
+        boolean wideIndices() {
+            return vertexCount() > 0xFFFF;
+        }
+
+        void addQuad(Facing facing, int planeValue, int minOneValue, int maxOneValue, int minTwoValue, int maxTwoValue, double scale) {
+            Axis one = facing.one();
+            Axis two = facing.two();
+            float plane = (float) (planeValue * scale);
+            float minOne = (float) (minOneValue * scale);
+            float maxOne = (float) (maxOneValue * scale);
+            float minTwo = (float) (minTwoValue * scale);
+            float maxTwo = (float) (maxTwoValue * scale);
+
+            float[] corners = new float[12];
+            setCorner(corners, 0, facing.axis, plane, one, minOne, two, minTwo);
+            setCorner(corners, 1, facing.axis, plane, one, maxOne, two, minTwo);
+            setCorner(corners, 2, facing.axis, plane, one, maxOne, two, maxTwo);
+            setCorner(corners, 3, facing.axis, plane, one, minOne, two, maxTwo);
+            // (one x two) points along +axis for cyclic axis order; flip the winding when that is not the facing direction.
+            boolean oneTwoPositive = (two.ordinal() - one.ordinal() + 3) % 3 == 1;
+            addPolygon(corners, 4, facing, oneTwoPositive != facing.positive);
+        }
+
+        private void addFan(VectorFan fan, Facing facing, double scale) {
+            int count = fan.count();
+            if (count < 3)
+                return;
+            float[] corners = new float[count * 3];
+            for (int i = 0; i < count; i++) {
+                Vec3f vec = fan.get(i);
+                corners[i * 3] = (float) (vec.x * scale);
+                corners[i * 3 + 1] = (float) (vec.y * scale);
+                corners[i * 3 + 2] = (float) (vec.z * scale);
+            }
+            addPolygon(corners, count, facing, false);
+        }
+
+        private static void setCorner(float[] corners, int corner, Axis axis, float plane, Axis one, float oneValue, Axis two, float twoValue) {
+            corners[corner * 3 + axis.ordinal()] = plane;
+            corners[corner * 3 + one.ordinal()] = oneValue;
+            corners[corner * 3 + two.ordinal()] = twoValue;
+        }
+
+        /** Appends a convex polygon as a triangle fan, with a flat normal and facing-based UVs. */
+        private void addPolygon(float[] corners, int count, Facing facing, boolean reverse) {
+            float[] normal = polygonNormal(corners, count, reverse);
+            float[] uBasis = UV_BASIS_U[facing.ordinal()];
+            float[] vBasis = UV_BASIS_V[facing.ordinal()];
+
+            float minU = Float.POSITIVE_INFINITY;
+            float minV = Float.POSITIVE_INFINITY;
+            for (int i = 0; i < count; i++) {
+                minU = Math.min(minU, dot(corners, i, uBasis));
+                minV = Math.min(minV, dot(corners, i, vBasis));
+            }
+
+            int base = vertexCount();
+            for (int i = 0; i < count; i++) {
+                int corner = reverse ? count - 1 - i : i;
+                for (int axis = 0; axis < 3; axis++) {
+                    float value = corners[corner * 3 + axis];
+                    positions.putFloat(value);
+                    min[axis] = Math.min(min[axis], value);
+                    max[axis] = Math.max(max[axis], value);
+                }
+                normals.putFloat(normal[0]);
+                normals.putFloat(normal[1]);
+                normals.putFloat(normal[2]);
+                uvs.putFloat(dot(corners, corner, uBasis) - minU);
+                uvs.putFloat(dot(corners, corner, vBasis) - minV);
+            }
+            for (int i = 1; i + 1 < count; i++) {
+                indices.putInt(base);
+                indices.putInt(base + i);
+                indices.putInt(base + i + 1);
+            }
+        }
+
+        private static float[] polygonNormal(float[] corners, int count, boolean reverse) {
+            // Newell's method, robust for fans with collinear leading corners.
+            float nx = 0;
+            float ny = 0;
+            float nz = 0;
+            for (int i = 0; i < count; i++) {
+                int j = (i + 1) % count;
+                float ax = corners[i * 3], ay = corners[i * 3 + 1], az = corners[i * 3 + 2];
+                float bx = corners[j * 3], by = corners[j * 3 + 1], bz = corners[j * 3 + 2];
+                nx += (ay - by) * (az + bz);
+                ny += (az - bz) * (ax + bx);
+                nz += (ax - bx) * (ay + by);
+            }
+            float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (length == 0)
+                return new float[] { 0, 1, 0 };
+            float sign = reverse ? -1 : 1;
+            return new float[] { sign * nx / length, sign * ny / length, sign * nz / length };
+        }
+
+        private static float dot(float[] corners, int corner, float[] basis) {
+            return corners[corner * 3] * basis[0] + corners[corner * 3 + 1] * basis[1] + corners[corner * 3 + 2] * basis[2];
+        }
+
+        /** Appends this primitive's vertex and index data to the binary buffer; no bytes are copied except narrowed indices. */
+        void layout(BinaryLayout layout) {
+            positionAccessor = layout.accessors;
+            layout.accessors += 4;
+            positionOffset = layout.append(positions.contents());
+            normalOffset = layout.append(normals.contents());
+            uvOffset = layout.append(uvs.contents());
+            ByteBuffer indexData = wideIndices() ? indices.contents() : narrowIndices();
+            indexByteLength = indexData.remaining();
+            indexOffset = layout.append(indexData);
+        }
+
+        private ByteBuffer narrowIndices() {
+            ByteBuffer wide = indices.contents().order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer narrow = ByteBuffer.allocateDirect(indexCount() * Short.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (wide.hasRemaining())
+                narrow.putShort((short) wide.getInt());
+            return narrow.flip();
+        }
+
+        void writeMaterial(JsonWriter out) throws IOException {
+            int color = material.color;
+            out.beginObject();
+            out.name("name").value(material.blockState);
+            out.name("pbrMetallicRoughness").beginObject();
+            out.name("baseColorFactor").beginArray()
+                    .value(((color >> 16) & 0xFF) / 255.0)
+                    .value(((color >> 8) & 0xFF) / 255.0)
+                    .value((color & 0xFF) / 255.0)
+                    .value(((color >>> 24) & 0xFF) / 255.0)
+                    .endArray();
+            out.name("metallicFactor").value(0);
+            out.name("roughnessFactor").value(1);
+            out.endObject();
+            if (((color >>> 24) & 0xFF) < 255)
+                out.name("alphaMode").value("BLEND");
+            out.name("extras").beginObject();
+            out.name("blockState").value(material.blockState);
+            out.name("color").value(color);
+            out.endObject();
+            out.endObject();
+        }
+
+        void writeBufferViews(JsonWriter out) throws IOException {
+            writeBufferView(out, positionOffset, positions.size(), ARRAY_BUFFER);
+            writeBufferView(out, normalOffset, normals.size(), ARRAY_BUFFER);
+            writeBufferView(out, uvOffset, uvs.size(), ARRAY_BUFFER);
+            writeBufferView(out, indexOffset, indexByteLength, ELEMENT_ARRAY_BUFFER);
+        }
+
+        private static void writeBufferView(JsonWriter out, int byteOffset, int byteLength, int target) throws IOException {
+            out.beginObject();
+            out.name("buffer").value(0);
+            out.name("byteOffset").value(byteOffset);
+            out.name("byteLength").value(byteLength);
+            out.name("target").value(target);
+            out.endObject();
+        }
+
+        void writeAccessors(JsonWriter out, int firstBufferView) throws IOException {
+            int vertices = vertexCount();
+            out.beginObject();
+            out.name("bufferView").value(firstBufferView);
+            out.name("componentType").value(COMPONENT_FLOAT);
+            out.name("count").value(vertices);
+            out.name("type").value("VEC3");
+            out.name("min").beginArray().value(min[0]).value(min[1]).value(min[2]).endArray();
+            out.name("max").beginArray().value(max[0]).value(max[1]).value(max[2]).endArray();
+            out.endObject();
+
+            out.beginObject();
+            out.name("bufferView").value(firstBufferView + 1);
+            out.name("componentType").value(COMPONENT_FLOAT);
+            out.name("count").value(vertices);
+            out.name("type").value("VEC3");
+            out.endObject();
+
+            out.beginObject();
+            out.name("bufferView").value(firstBufferView + 2);
+            out.name("componentType").value(COMPONENT_FLOAT);
+            out.name("count").value(vertices);
+            out.name("type").value("VEC2");
+            out.endObject();
+
+            out.beginObject();
+            out.name("bufferView").value(firstBufferView + 3);
+            out.name("componentType").value(wideIndices() ? COMPONENT_UNSIGNED_INT : COMPONENT_UNSIGNED_SHORT);
+            out.name("count").value(indexCount());
+            out.name("type").value("SCALAR");
+            out.endObject();
+        }
+    }
+
+    /**
+     * Greedy rectangle merging for the faces of one plane.
+     *
+     * Rectangle edges are coordinate-compressed into a cell grid, the covered cells are marked,
+     * and maximal rectangles are grown from the lowest uncovered cell: first along {@code one},
+     * then along {@code two} for as long as the whole row is covered. The union of the emitted
+     * rectangles is exactly the union of the input faces.
+     */
+    private static final class PlaneMerger {
+        /** Planes whose compressed grid would exceed this many cells are emitted unmerged. */
+        private static final long MAX_CELLS = 1 << 24;
+
+        private PlaneMerger() {}
+
+        /** {@code rects} holds {@code minOne, maxOne, minTwo, maxTwo} quadruples; the result uses the same layout. */
+        static IntList merge(IntList rects) {
+            int count = rects.size / 4;
+            if (count < 2)
+                return rects;
+
+            int[] ones = distinctSorted(rects, 0);
+            int[] twos = distinctSorted(rects, 2);
+            int width = ones.length - 1;
+            int height = twos.length - 1;
+            if ((long) width * height > MAX_CELLS)
+                return rects;
+
+            boolean[] filled = new boolean[width * height];
+            for (int i = 0; i < rects.size; i += 4) {
+                int oneFrom = Arrays.binarySearch(ones, rects.data[i]);
+                int oneTo = Arrays.binarySearch(ones, rects.data[i + 1]);
+                int twoFrom = Arrays.binarySearch(twos, rects.data[i + 2]);
+                int twoTo = Arrays.binarySearch(twos, rects.data[i + 3]);
+                for (int two = twoFrom; two < twoTo; two++)
+                    Arrays.fill(filled, two * width + oneFrom, two * width + oneTo, true);
+            }
+
+            IntList out = new IntList();
+            for (int two = 0; two < height; two++) {
+                for (int one = 0; one < width; one++) {
+                    if (!filled[two * width + one])
+                        continue;
+
+                    int oneEnd = one + 1;
+                    while (oneEnd < width && filled[two * width + oneEnd])
+                        oneEnd++;
+
+                    int twoEnd = two + 1;
+                    while (twoEnd < height && isRowFilled(filled, width, twoEnd, one, oneEnd))
+                        twoEnd++;
+
+                    for (int row = two; row < twoEnd; row++)
+                        Arrays.fill(filled, row * width + one, row * width + oneEnd, false);
+
+                    out.add(ones[one]);
+                    out.add(ones[oneEnd]);
+                    out.add(twos[two]);
+                    out.add(twos[twoEnd]);
+                    one = oneEnd - 1;
+                }
+            }
+            return out;
+        }
+
+        private static boolean isRowFilled(boolean[] filled, int width, int row, int from, int to) {
+            for (int one = from; one < to; one++)
+                if (!filled[row * width + one])
+                    return false;
+            return true;
+        }
+
+        /** Distinct values of the min/max pair starting at {@code offset} in every quadruple. */
+        private static int[] distinctSorted(IntList rects, int offset) {
+            int[] values = new int[rects.size / 2];
+            int size = 0;
+            for (int i = 0; i < rects.size; i += 4) {
+                values[size++] = rects.data[i + offset];
+                values[size++] = rects.data[i + offset + 1];
+            }
+            Arrays.sort(values);
+            int distinct = 0;
+            for (int i = 0; i < size; i++)
+                if (distinct == 0 || values[i] != values[distinct - 1])
+                    values[distinct++] = values[i];
+            return Arrays.copyOf(values, distinct);
+        }
+    }
+
+    private static int align4(int value) {
+        return (value + 3) & ~3;
+    }
+
+    /**
+     * Memory of one file's export, from the platform MXBeans, sampled once its mesh is encoded.
+     *
+     * {@code heapAfterEncode} is the heap in use at that point, which depends on when the collector last ran.
+     * {@code heapPeakRise} is how far the file raised the heap pools' peak usage, summed over the pools: zero when
+     * the mesh fit under the peaks already reached, so it shows files that pushed the heap to a new high rather
+     * than how much each file allocated. The JVM-wide peak counters are read, never reset, since other exports
+     * and monitoring tools share them. {@code directAfterEncode} is the direct buffer pool in use, which still
+     * holds the file's vertex and index buffers.
+     */
+    record MemoryWatermark(long heapAfterEncode, long heapPeakRise, long directAfterEncode) {
+        static long heapPoolPeaks() {
+            long out = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+                if (pool.getType() == MemoryType.HEAP && pool.isValid())
+                    out += pool.getPeakUsage().getUsed();
+            return out;
+        }
+
+        static MemoryWatermark afterEncode(long heapPeaksBefore) {
+            long direct = 0;
+            for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class))
+                if (pool.getName().equals("direct"))
+                    direct = pool.getMemoryUsed();
+            return new MemoryWatermark(
+                    ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(),
+                    Math.max(0, heapPoolPeaks() - heapPeaksBefore),
+                    direct);
+        }
+
+        String describe() {
+            return String.format(Locale.ROOT, "heapAfterEncode=%.1fMB, heapPeakRise=%.1fMB, directAfterEncode=%.1fMB",
+                    heapAfterEncode / MEGABYTE, heapPeakRise / MEGABYTE, directAfterEncode / MEGABYTE);
+        }
+    }
+
+    /** Little-endian direct buffer sized up front, so mesh data stays off the Java heap until it is written. */
+    private static final class DirectBuffer {
+        private final ByteBuffer data;
+
+        DirectBuffer(int bytes) {
+            data = ByteBuffer.allocateDirect(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        void putFloat(float value) {
+            data.putFloat(value);
+        }
+
+        void putInt(int value) {
+            data.putInt(value);
+        }
+
+        int size() {
+            return data.position();
+        }
+
+        /** A read-only view of the bytes written so far. */
+        ByteBuffer contents() {
+            return data.asReadOnlyBuffer().flip();
+        }
+    }
+
+    private static final class IntList {
+        int[] data = new int[64];
+        int size;
+
+        void add(int value) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, size * 2);
+            data[size++] = value;
+        }
+    }
+}
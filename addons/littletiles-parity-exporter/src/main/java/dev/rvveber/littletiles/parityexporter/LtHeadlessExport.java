@@ -0,0 +1,165 @@
+package dev.rvveber.littletiles.parityexporter;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import dev.rvveber.littletiles.parityexporter.LtDebugExportCommand.ExportSettings;
+import dev.rvveber.littletiles.parityexporter.LtDebugExportCommand.GeometryMode;
+import dev.rvveber.littletiles.parityexporter.LtExportCommand.CombinedSettings;
+import dev.rvveber.littletiles.parityexporter.LtTextureExportCommand.TextureSettings;
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+
+/**
+ * Command-line entry point that runs one export batch without starting a server, then exits.
+ *
+ * <pre>
+ * LtHeadlessExport debug    &lt;input_dir&gt; &lt;output_dir&gt; [client|server] [options...]
+ * LtHeadlessExport textures &lt;input_dir&gt; &lt;output_dir&gt; [options...]
+ * LtHeadlessExport export   &lt;input_dir&gt; &lt;output_dir&gt; [client|server] [options...]
+ * </pre>
+ *
+ * Only the vanilla bootstrap runs (the built-in block and item registries), as in the JMH harness, followed by
+ * {@link LittleTilesBootstrap}: the LittleTiles config with its grids, the structure types, and the loader and
+ * converter classes. No mods are loaded and no level is created.
+ * The batch is the same as the {@code /lt-debug-export}, {@code /lt-texture-export} or {@code /lt-export}
+ * command with the same options, and its lines go to stdout and stderr. Before the batch, one {@code startup:}
+ * line breaks the startup time down by phase. Without loaded mods, textures resolve from the classpath only,
+ * and the mod versions in reports read {@code unknown}.
+ *
+ * Exits with 0 when every file was exported, 1 when any file or the batch failed, and 2 on bad arguments.
+ */
+public final class LtHeadlessExport {
+
+    private static final String JVM = "jvm";
+    private static final String DETECT_VERSION = "detectVersion";
+    private static final String BOOTSTRAP = "bootstrap";
+    private static final String LITTLE_TILES = "littleTiles";
+    private static final String ASSET_INDEX = "assetIndex";
+
+    private static final String USAGE = "usage: LtHeadlessExport <debug|textures|export> <input_dir> <output_dir> [client|server] [options...]";
+
+    private LtHeadlessExport() {}
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    static int run(String[] args) {
+        long jvmMillis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        if (args.length < 3) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        String mode = args[0].toLowerCase();
+        Path inputDir = Path.of(args[1]).toAbsolutePath().normalize();
+        Path outputDir = Path.of(args[2]).toAbsolutePath().normalize();
+        List<String> rest = Arrays.asList(args).subList(3, args.length);
+
+        GeometryMode geometryMode = GeometryMode.CLIENT;
+        if (!mode.equals("textures") && !rest.isEmpty() && GeometryMode.fromArg(rest.get(0)) != null) {
+            geometryMode = GeometryMode.fromArg(rest.get(0));
+            rest = rest.subList(1, rest.size());
+        }
+        String options = String.join(" ", rest);
+
+        String command;
+        ExportJobs.JobBody batch;
+        boolean textures;
+        List<Path> inputFiles;
+        try {
+            if (!Files.isDirectory(inputDir)) {
+                System.err.println("lt-headless-export failed: input path is not a directory: " + inputDir);
+                return 2;
+            }
+            try (Stream<Path> stream = Files.list(inputDir)) {
+                inputFiles = stream
+                        .filter(Files::isRegularFile)
+                        .sorted(Comparator.comparing(path -> path.getFileName().toString()))
+                        .toList();
+            }
+            if (inputFiles.isEmpty()) {
+                System.err.println("lt-headless-export failed: input directory has no files: " + inputDir);
+                return 2;
+            }
+
+            switch (mode) {
+                case "debug" -> {
+                    ExportSettings settings = ExportSettings.parse(geometryMode, options);
+                    command = "lt-debug-export";
+                    textures = false;
+                    batch = job -> LtDebugExportCommand.runBatch(job, inputFiles, outputDir, settings);
+                }
+                case "textures" -> {
+                    TextureSettings settings = TextureSettings.parse(options);
+                    Path texturesRoot = outputDir.resolve("textures");
+                    Path storeDir = settings.store != null ? Path.of(settings.store).toAbsolutePath().normalize() : null;
+                    Files.createDirectories(texturesRoot);
+                    command = "lt-texture-export";
+                    textures = true;
+                    batch = job -> LtTextureExportCommand.runBatch(job, inputFiles, outputDir, texturesRoot, storeDir, settings);
+                }
+                case "export" -> {
+                    CombinedSettings settings = CombinedSettings.parse(geometryMode, options);
+                    Path storeDir = settings.textures.store != null ? Path.of(settings.textures.store).toAbsolutePath().normalize() : null;
+                    command = "lt-export";
+                    textures = settings.outputs.contains(LtExportCommand.Output.TEXTURES);
+                    batch = job -> LtExportCommand.runBatch(job, inputFiles, outputDir, storeDir, settings);
+                }
+                default -> {
+                    System.err.println(USAGE);
+                    return 2;
+                }
+            }
+            Files.createDirectories(outputDir);
+        } catch (IllegalArgumentException e) {
+            System.err.println("lt-headless-export failed: " + e.getMessage());
+            return 2;
+        } catch (Exception e) {
+            System.err.println("lt-headless-export failed: " + e);
+            return 1;
+        }
+
+        // Time from JVM start to main, then every bootstrap step; argument checks above are not counted.
+        ExportTimings startup = new ExportTimings();
+        startup.add(JVM, TimeUnit.MILLISECONDS.toNanos(Math.max(0, jvmMillis)));
+        SharedConstants.tryDetectVersion();
+        startup.lap(DETECT_VERSION);
+        Bootstrap.bootStrap();
+        startup.lap(BOOTSTRAP);
+        try {
+            LittleTilesBootstrap.init();
+        } catch (RuntimeException | LinkageError e) {
+            System.err.println("lt-headless-export failed: LittleTiles setup failed: " + e);
+            return 1;
+        }
+        startup.lap(LITTLE_TILES);
+        if (textures) {
+            AssetIndex.current();
+            startup.lap(ASSET_INDEX);
+        }
+        System.out.println("startup: " + startup.describe());
+
+        AtomicBoolean failed = new AtomicBoolean();
+        ExportJobs.JobState state = ExportJobs.runInline(command, inputFiles.size(), new ExportJobs.Feedback() {
+            @Override
+            public void success(String message) {
+                System.out.println(message);
+            }
+
+            @Override
+            public void failure(String message) {
+                failed.set(true);
+                System.err.println(message);
+            }
+        }, batch);
+        return state == ExportJobs.JobState.COMPLETED && !failed.get() ? 0 : 1;
+    }
+}
@@ -1,14 +1,16 @@
 package dev.rvveber.littletiles.parityexporter;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -19,8 +21,13 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import com.google.gson.Gson;
@@ -35,14 +42,11 @@ import com.mojang.brigadier.builder.LiteralArgumentBuilder;
 
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
-import net.minecraft.nbt.CompoundTag;
-import net.minecraft.nbt.TagParser;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.world.level.FoliageColor;
 import team.creative.littletiles.common.block.little.tile.LittleTile;
 import team.creative.littletiles.common.block.little.tile.group.LittleGroup;
-import team.creative.littletiles.common.convertion.OldLittleTilesDataParser;
 
 public final class LtTextureExportCommand {
 
@@ -51,6 +55,60 @@ public final class LtTextureExportCommand {
             .disableHtmlEscaping()
             .create();
 
+    /**
+     * Batch settings from the trailing {@code key=value} options ({@code workers=8 cache=off store=<dir> atlas=on});
+     * a bare integer is accepted as the worker count. {@code store} is kept as given and resolved against the
+     * server directory by the command.
+     */
+    static final class TextureSettings {
+        final int workers;
+        final boolean reuseCache;
+        final String store;
+        final boolean atlas;
+
+        private TextureSettings(int workers, boolean reuseCache, String store, boolean atlas) {
+            this.workers = workers;
+            this.reuseCache = reuseCache;
+            this.store = store;
+            this.atlas = atlas;
+        }
+
+        /** Texture reports depend on the loaded mods' assets, which the runtime versions stand in for. */
+        String cacheKey() {
+            return LtDebugExportCommand.buildRuntimeMetadata() + "\n" + assetKey();
+        }
+
+        /** The atlas switch and layout, and the resource packs, which override mod assets. */
+        String assetKey() {
+            return "atlas=" + atlas + (atlas ? " gutter=" + TextureAtlas.GUTTER : "") + "\npacks=" + AssetIndex.current().packSignatures();
+        }
+
+        static TextureSettings parse(String optionsArg) {
+            int workers = 1;
+            boolean reuseCache = true;
+            String store = null;
+            boolean atlas = false;
+            String options = optionsArg == null ? "" : optionsArg.trim();
+            for (String token : options.isEmpty() ? new String[0] : options.split("\\s+")) {
+                int equals = token.indexOf('=');
+                String key = equals < 0 ? "workers" : token.substring(0, equals).toLowerCase();
+                String value = equals < 0 ? token : token.substring(equals + 1);
+                switch (key) {
+                    case "workers" -> workers = LtDebugExportCommand.ExportSettings.parseWorkers("workers", value);
+                    case "cache" -> reuseCache = LtDebugExportCommand.parseSwitch("cache", value);
+                    case "store" -> {
+                        if (value.isBlank())
+                            throw new IllegalArgumentException("invalid store \"\" (expected: a directory)");
+                        store = value;
+                    }
+                    case "atlas" -> atlas = LtDebugExportCommand.parseSwitch("atlas", value);
+                    default -> throw new IllegalArgumentException("unknown option \"" + token + "\"");
+                }
+            }
+            return new TextureSettings(workers, reuseCache, store, atlas);
+        }
+    }
+
     private LtTextureExportCommand() {}
 
     public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
@@ -61,16 +119,30 @@ public final class LtTextureExportCommand {
                                 .executes(context -> executeBatch(
                                         context.getSource(),
                                         StringArgumentType.getString(context, "input_dir"),
-                                        StringArgumentType.getString(context, "output_dir")))));
+                                        StringArgumentType.getString(context, "output_dir"),
+                                        ""))
+                                .then(Commands.argument("options", StringArgumentType.greedyString())
+                                        .executes(context -> executeBatch(
+                                                context.getSource(),
+                                                StringArgumentType.getString(context, "input_dir"),
+                                                StringArgumentType.getString(context, "output_dir"),
+                                                StringArgumentType.getString(context, "options"))))));
         dispatcher.register(root);
     }
 
-    private static int executeBatch(CommandSourceStack source, String inputDirArg, String outputDirArg) {
+    private static int executeBatch(CommandSourceStack source, String inputDirArg, String outputDirArg, String optionsArg) {
+        TextureSettings settings;
+        try {
+            settings = TextureSettings.parse(optionsArg);
+        } catch (IllegalArgumentException e) {
+            source.sendFailure(Component.literal("lt-texture-export failed: " + e.getMessage()));
+            return 0;
+        }
         MinecraftServer server = source.getServer();
-        Path inputDir = resolvePath(server, inputDirArg);
-        Path outputDir = resolvePath(server, outputDirArg);
+        Path inputDir = ExportPaths.resolve(server, inputDirArg);
+        Path outputDir = ExportPaths.resolve(server, outputDirArg);
         Path texturesRoot = outputDir.resolve("textures");
-        TextureResolver resolver = new TextureResolver();
+        Path storeDir = settings.store != null ? ExportPaths.resolve(server, settings.store) : null;
 
         try {
             if (!Files.isDirectory(inputDir)) {
@@ -93,45 +165,9 @@ public final class LtTextureExportCommand {
                 return 0;
             }
 
-            int ok = 0;
-            int failed = 0;
-            long totalBlockStates = 0;
-            long totalResolvedTextures = 0;
-            long totalMissingTextures = 0;
-            List<String> failures = new ArrayList<>();
-
-            for (Path inputPath : inputFiles) {
-                Path outputPath = outputDir.resolve(toOutputFileName(inputPath.getFileName().toString()));
-                try {
-                    TextureProcessResult result = processSingleFile(inputPath, outputPath, texturesRoot, resolver);
-                    ok++;
-                    totalBlockStates += result.blockStates;
-                    totalResolvedTextures += result.resolvedTextures;
-                    totalMissingTextures += result.missingTextures;
-                } catch (Exception e) {
-                    failed++;
-                    String detail = inputPath.getFileName() + ": " + e.getMessage();
-                    failures.add(detail);
-                    LittleTilesParityExporter.LOGGER.error("lt-texture-export failed for input {}", inputPath, e);
-                }
-            }
-
-            String summary = "lt-texture-export processed " + inputFiles.size() + " files to " + outputDir +
-                    " (ok=" + ok + ", failed=" + failed +
-                    ", blockStates=" + totalBlockStates +
-                    ", texturesResolved=" + totalResolvedTextures +
-                    ", missingTextures=" + totalMissingTextures + ")";
-            source.sendSuccess(() -> Component.literal(summary), false);
-
-            if (!failures.isEmpty()) {
-                int maxLines = Math.min(5, failures.size());
-                for (int i = 0; i < maxLines; i++)
-                    source.sendFailure(Component.literal("  - " + failures.get(i)));
-                if (failures.size() > maxLines)
-                    source.sendFailure(Component.literal("  ... and " + (failures.size() - maxLines) + " more failures"));
-            }
-
-            return failed == 0 ? 1 : 0;
+            ExportJobs.submit(source, "lt-texture-export", inputFiles.size(),
+                    job -> runBatch(job, inputFiles, outputDir, texturesRoot, storeDir, settings));
+            return 1;
         } catch (Exception e) {
             source.sendFailure(Component.literal("lt-texture-export batch failed: " + e.getMessage()));
             LittleTilesParityExporter.LOGGER.error("lt-texture-export batch failed for inputDir {}", inputDir, e);
@@ -139,29 +175,146 @@ public final class LtTextureExportCommand {
         }
     }
 
+    static void runBatch(
+            ExportJobs.Job job,
+            List<Path> inputFiles,
+            Path outputDir,
+            Path texturesRoot,
+            Path storeDir,
+            TextureSettings settings) throws Exception {
+        int ok = 0;
+        int failed = 0;
+        int cancelled = 0;
+        long totalBlockStates = 0;
+        long totalResolvedTextures = 0;
+        long totalMissingTextures = 0;
+        List<String> failures = new ArrayList<>();
+        ExportTimings.Rollup timings = new ExportTimings.Rollup();
+        ExportCache cache = ExportCache.open(outputDir, "lt-texture-export", settings.cacheKey(), settings.reuseCache);
+        TextureResolver resolver = TextureResolver.open(outputDir, storeDir);
+
+        List<ExportWorkers.Outcome<FileResult>> outcomes;
+        try {
+            outcomes = ExportWorkers.run(job, "lt-texture-export", inputFiles, settings.workers,
+                    inputPath -> processFile(inputPath, outputDir, texturesRoot, settings, cache, resolver));
+        } finally {
+            LtDebugExportCommand.saveCache(cache, outputDir);
+            resolver.close();
+        }
+        for (ExportWorkers.Outcome<FileResult> outcome : outcomes) {
+            if (outcome.result() != null) {
+                JsonObject stats = outcome.result().stats();
+                ok++;
+                totalBlockStates += stats.get("blockStates").getAsInt();
+                totalResolvedTextures += stats.get("resolvedTextures").getAsInt();
+                totalMissingTextures += stats.get("missingTextures").getAsInt();
+                if (outcome.result().timings() != null)
+                    timings.record(outcome.inputPath().getFileName().toString(), outcome.result().timings());
+            } else if (outcome.error() != null) {
+                failed++;
+                failures.add(outcome.inputPath().getFileName() + ": " + outcome.error().getMessage());
+            } else {
+                cancelled++;
+            }
+        }
+
+        String summary = "lt-texture-export processed " + (inputFiles.size() - cancelled) + " files to " + outputDir +
+                " (ok=" + ok + ", failed=" + failed +
+                ", blockStates=" + totalBlockStates +
+                ", texturesResolved=" + totalResolvedTextures +
+                ", missingTextures=" + totalMissingTextures +
+                ", workers=" + Math.min(settings.workers, inputFiles.size()) +
+                (cancelled > 0 ? ", cancelled=" + cancelled : "") + ")";
+        job.sendSuccess(summary);
+        job.sendSuccess("  " + cache.describe());
+        job.sendSuccess("  " + resolver.describeIndex());
+        job.sendSuccess("  " + resolver.describeFiles());
+        job.sendSuccess("  " + resolver.describeAssets());
+        if (!timings.isEmpty()) {
+            job.sendSuccess("  " + timings.describeFiles());
+            job.sendSuccess("  " + timings.describePhases());
+        }
+
+        if (!failures.isEmpty()) {
+            int maxLines = Math.min(5, failures.size());
+            for (int i = 0; i < maxLines; i++)
+                job.sendFailure("  - " + failures.get(i));
+            if (failures.size() > maxLines)
+                job.sendFailure("  ... and " + (failures.size() - maxLines) + " more failures");
+        }
+    }
+
+    /** Files share one resolver, so a texture referenced by several files is still resolved and copied once. */
+    private static FileResult processFile(
+            Path inputPath,
+            Path outputDir,
+            Path texturesRoot,
+            TextureSettings settings,
+            ExportCache cache,
+            TextureResolver resolver) throws Exception {
+        Path outputPath = outputDir.resolve(toOutputFileName(inputPath.getFileName().toString()));
+        ExportCache.Probe probe = cache.probe(inputPath);
+        if (probe.hit())
+            return new FileResult(probe.stats(), null);
+        TextureProcessResult result = processSingleFile(inputPath, outputPath, texturesRoot, resolver, settings.atlas);
+        List<Path> outputs = new ArrayList<>();
+        outputs.add(outputPath);
+        for (String uri : result.outputUris)
+            outputs.add(outputDir.resolve(uri));
+        cache.record(probe, outputs, result.stats());
+        return new FileResult(result.stats(), result.timings);
+    }
+
     private static TextureProcessResult processSingleFile(
             Path inputPath,
             Path outputPath,
             Path texturesRoot,
-            TextureResolver resolver) throws Exception {
-        String rawSnbt = Files.readString(inputPath, StandardCharsets.UTF_8);
-        CompoundTag parsedTag = TagParser.parseTag(rawSnbt);
-        boolean legacy = OldLittleTilesDataParser.isOld(parsedTag);
-        CompoundTag normalizedTag = legacy
-                ? OldLittleTilesDataParser.convert(parsedTag.copy())
-                : parsedTag.copy();
-        LittleGroup root = LittleGroup.load(normalizedTag);
-
-        Set<BlockStateRef> blockStates = collectBlockStates(root);
+            TextureResolver resolver,
+            boolean atlas) throws Exception {
+        ExportTimings timings = new ExportTimings();
+        return writeReport(LoadedInput.load(inputPath, timings), outputPath, texturesRoot, resolver, atlas, timings);
+    }
+
+    /**
+     * Resolves and exports the textures of an already loaded input and writes its texture report. With
+     * {@code atlas}, the exported textures are also packed into {@code atlases/<basename>.<page>.png} next to the
+     * report, and the report's {@code atlas} section maps each texture id to its page and rect.
+     */
+    static TextureProcessResult writeReport(
+            LoadedInput input,
+            Path outputPath,
+            Path texturesRoot,
+            TextureResolver resolver,
+            boolean atlas,
+            ExportTimings timings) throws IOException {
+        TextureReport report = buildReport(input, outputPath, texturesRoot, resolver, atlas, timings);
+        Files.createDirectories(outputPath.getParent());
+        Files.writeString(outputPath, report.json() + System.lineSeparator(), StandardCharsets.UTF_8);
+        timings.lap(ExportTimings.WRITE);
+        return report.result();
+    }
+
+    /**
+     * Like {@link #writeReport} but returns the encoded report instead of writing it; the textures and atlas
+     * pages are still exported next to {@code outputPath}.
+     */
+    static TextureReport buildReport(
+            LoadedInput input,
+            Path outputPath,
+            Path texturesRoot,
+            TextureResolver resolver,
+            boolean atlas,
+            ExportTimings timings) throws IOException {
+        Set<BlockStateRef> blockStates = collectBlockStates(input.root());
         List<BlockStateRef> sortedStates = new ArrayList<>(blockStates);
         sortedStates.sort(Comparator.comparing(BlockStateRef::canonicalState));
 
         JsonObject report = new JsonObject();
         report.addProperty("generatedAt", Instant.now().toString());
-        report.addProperty("schema", legacy ? "legacy" : "current");
-        report.addProperty("inputPath", inputPath.toString());
+        report.addProperty("schema", input.legacy() ? "legacy" : "current");
+        report.addProperty("inputPath", input.inputPath().toString());
         report.addProperty("outputPath", outputPath.toString());
-        report.add("textureStrategy", buildTextureStrategyJson());
+        report.add("textureStrategy", buildTextureStrategyJson(atlas));
 
         JsonArray blockStatesJson = new JsonArray();
         Map<ResourceId, TextureExportInfo> fileTextures = new LinkedHashMap<>();
@@ -189,7 +342,11 @@ public final class LtTextureExportCommand {
             JsonArray textureIds = new JsonArray();
             JsonArray missingTextureIds = new JsonArray();
             for (ResourceId textureId : sortedResourceIds(textures)) {
+                long started = System.nanoTime();
                 TextureExportInfo exported = resolver.exportTexture(textureId, texturesRoot, missingAssets);
+                long elapsed = System.nanoTime() - started;
+                timings.add(ExportTimings.TEXTURE_EXPORT, elapsed);
+                timings.exclude(elapsed);
                 textureIds.add(textureId.toString());
                 fileTextures.putIfAbsent(textureId, exported);
                 if (!exported.exported()) {
@@ -204,6 +361,7 @@ public final class LtTextureExportCommand {
         }
 
         report.add("blockStates", blockStatesJson);
+        timings.lap(ExportTimings.TEXTURE_RESOLVE);
 
         JsonArray texturesJson = new JsonArray();
         for (ResourceId textureId : sortedResourceIds(fileTextures.keySet()))
@@ -212,6 +370,18 @@ public final class LtTextureExportCommand {
         report.add("missingTextureIds", toJsonArray(sortedResourceIdStrings(fileMissingTextures)));
         report.add("missingAssets", toJsonArray(sortedStrings(missingAssets)));
 
+        List<String> outputUris = new ArrayList<>();
+        for (TextureExportInfo info : fileTextures.values())
+            if (info.exported())
+                outputUris.add(info.uri());
+        if (atlas) {
+            TextureAtlas.Result packed = packAtlas(fileTextures, outputPath, texturesRoot.getParent());
+            report.add("atlas", packed.json());
+            for (Path page : packed.pages())
+                outputUris.add(texturesRoot.getParent().relativize(page).toString().replace('\\', '/'));
+            timings.lap(ExportTimings.ATLAS);
+        }
+
         JsonObject stats = new JsonObject();
         stats.addProperty("blockStates", sortedStates.size());
         stats.addProperty("modelsReferenced", fileModels.size());
@@ -219,11 +389,42 @@ public final class LtTextureExportCommand {
         stats.addProperty("texturesExported", fileTextures.values().stream().filter(TextureExportInfo::exported).count());
         stats.addProperty("missingTextures", fileMissingTextures.size());
         report.add("stats", stats);
+        timings.lap(ExportTimings.ENCODE);
+        report.add("timings", timings.toJson());
+
+        String json = GSON.toJson(report);
+        timings.lap(ExportTimings.ENCODE);
+        return new TextureReport(
+                json,
+                new TextureProcessResult(sortedStates.size(), fileTextures.size(), fileMissingTextures.size(), outputUris, timings));
+    }
 
-        Files.createDirectories(outputPath.getParent());
-        Files.writeString(outputPath, GSON.toJson(report) + System.lineSeparator(), StandardCharsets.UTF_8);
-
-        return new TextureProcessResult(sortedStates.size(), fileTextures.size(), fileMissingTextures.size());
+    /** Packs every exported texture of one report, with its {@code .mcmeta} animation section where present. */
+    private static TextureAtlas.Result packAtlas(
+            Map<ResourceId, TextureExportInfo> fileTextures,
+            Path outputPath,
+            Path outputDir) throws IOException {
+        List<TextureAtlas.Source> sources = new ArrayList<>();
+        for (ResourceId textureId : sortedResourceIds(fileTextures.keySet())) {
+            TextureExportInfo info = fileTextures.get(textureId);
+            if (!info.exported())
+                continue;
+            Path png = outputDir.resolve(info.uri());
+            JsonObject animation = null;
+            if (info.hasMcmeta) {
+                Path metaPath = png.resolveSibling(png.getFileName() + ".mcmeta");
+                try (Reader reader = Files.newBufferedReader(metaPath, StandardCharsets.UTF_8)) {
+                    JsonObject meta = asObject(JsonParser.parseReader(reader));
+                    animation = meta != null ? asObject(meta.get("animation")) : null;
+                } catch (Exception e) {
+                    LittleTilesParityExporter.LOGGER.warn("lt-texture-export failed to parse texture metadata {}, packing it as a static texture: {}", metaPath, e.getMessage());
+                }
+            }
+            sources.add(new TextureAtlas.Source(textureId.toString(), png, animation));
+        }
+        String fileName = outputPath.getFileName().toString();
+        String baseName = fileName.endsWith(".textures.json") ? fileName.substring(0, fileName.length() - ".textures.json".length()) : fileName;
+        return TextureAtlas.pack(sources, outputDir, outputPath.getParent().resolve("atlases"), baseName);
     }
 
     private static Set<BlockStateRef> collectBlockStates(LittleGroup root) {
@@ -358,7 +559,7 @@ public final class LtTextureExportCommand {
         }
     }
 
-    private static JsonObject buildTextureStrategyJson() {
+    private static JsonObject buildTextureStrategyJson(boolean atlas) {
         JsonObject out = new JsonObject();
         out.addProperty("source", "assets/<namespace>/blockstates + models + textures resources");
         out.addProperty("textureFormat", "png");
@@ -366,10 +567,13 @@ public final class LtTextureExportCommand {
         out.addProperty("atlasIndependent", true);
         out.addProperty("browserCacheFriendly", true);
         out.addProperty("textureAtlasRequired", false);
+        out.addProperty("atlas", atlas ? "per-file" : "off");
 
         JsonArray notes = new JsonArray();
         notes.add("Resolves per-block textures from blockstate/model graph, not stitched atlas coordinates.");
         notes.add("Exports external image files suitable for direct glTF image URIs.");
+        if (atlas)
+            notes.add("Also packs this file's textures into power-of-two atlas pages; the atlas section maps texture ids to page rects and UVs.");
         notes.add("Future optimization path: offline transcode to KTX2 while preserving stable per-texture URIs.");
         out.add("notes", notes);
         return out;
@@ -408,22 +612,32 @@ public final class LtTextureExportCommand {
         return out;
     }
 
-    private static Path resolvePath(MinecraftServer server, String raw) {
-        Path path = Path.of(raw);
-        if (path.isAbsolute())
-            return path.normalize();
-        return server.getFile(raw).normalize();
+    static String toOutputFileName(String inputFileName) {
+        return ExportPaths.baseName(inputFileName) + ".textures.json";
     }
 
-    private static String toOutputFileName(String inputFileName) {
-        int dot = inputFileName.lastIndexOf('.');
-        String base = dot > 0 ? inputFileName.substring(0, dot) : inputFileName;
-        if (base.isBlank())
-            base = inputFileName;
-        return base + ".textures.json";
+    /** An encoded texture report that has not been written anywhere yet. */
+    record TextureReport(String json, TextureProcessResult result) {}
+
+    record TextureProcessResult(
+            int blockStates,
+            int resolvedTextures,
+            int missingTextures,
+            List<String> outputUris,
+            ExportTimings timings) {
+
+        /** Summary counters, as recorded in the export cache. */
+        JsonObject stats() {
+            JsonObject out = new JsonObject();
+            out.addProperty("blockStates", blockStates);
+            out.addProperty("resolvedTextures", resolvedTextures);
+            out.addProperty("missingTextures", missingTextures);
+            return out;
+        }
     }
 
-    private record TextureProcessResult(int blockStates, int resolvedTextures, int missingTextures) {}
+    /** Per-file batch result; {@code timings} is null when the file was skipped as a cache hit. */
+    private record FileResult(JsonObject stats, ExportTimings timings) {}
 
     private record BlockStateRef(
             String rawState,
@@ -496,6 +710,18 @@ public final class LtTextureExportCommand {
             return exported;
         }
 
+        /** True unless an exported texture or its {@code .mcmeta} is gone from {@code texturesRoot}. */
+        boolean outputsExist(Path texturesRoot) {
+            if (!exported)
+                return true;
+            Path png = texturesRoot.resolve(textureId.namespace()).resolve(textureId.path() + ".png");
+            return Files.isRegularFile(png) && (!hasMcmeta || Files.isRegularFile(png.resolveSibling(png.getFileName() + ".mcmeta")));
+        }
+
+        String uri() {
+            return uri;
+        }
+
         JsonObject toJson() {
             JsonObject out = new JsonObject();
             out.addProperty("id", textureId.toString());
@@ -507,42 +733,313 @@ public final class LtTextureExportCommand {
         }
     }
 
-    private static final class TextureResolver {
+    /**
+     * A blockstate JSON compiled once into predicates over the properties it references.
+     *
+     * Every property name and value that appears in a variant key or multipart {@code when} is interned to an
+     * int; variant keys and {@code when} trees become predicates over a state's tuple of value ids, one slot
+     * per referenced property. Values the definition never mentions, and missing properties, map to -1 and
+     * match no clause. Model refs are parsed at compile time. Results are memoized per tuple, so states that
+     * only differ in properties the definition ignores share one evaluation. Immutable after construction
+     * apart from the concurrent memo, so it is shared by all export workers.
+     */
+    private static final class CompiledBlockState {
+        private static final StatePredicate ALWAYS = values -> true;
+        private static final StatePredicate NEVER = values -> false;
+
+        private final String defaultNamespace;
+        private final Map<String, Integer> slots = new LinkedHashMap<>();
+        private final List<Map<String, Integer>> valueIds = new ArrayList<>();
+        private final List<Rule> variants = new ArrayList<>();
+        private final List<ResourceId> defaultVariant = new ArrayList<>();
+        private final List<Rule> multipart = new ArrayList<>();
+        private final Map<Tuple, Set<ResourceId>> resolved = new ConcurrentHashMap<>();
+
+        /** Variant keys keep JSON order; only a key of exactly {@code ""} is the fallback when nothing else matches. */
+        CompiledBlockState(JsonObject blockstate, String defaultNamespace) {
+            this.defaultNamespace = defaultNamespace;
+            JsonObject variantsJson = asObject(blockstate.get("variants"));
+            if (variantsJson != null) {
+                for (Map.Entry<String, JsonElement> entry : variantsJson.entrySet()) {
+                    String key = entry.getKey();
+                    if (key == null || key.isBlank())
+                        continue;
+                    variants.add(new Rule(compileVariantKey(key), models(entry.getValue())));
+                }
+                if (variantsJson.has(""))
+                    defaultVariant.addAll(models(variantsJson.get("")));
+            }
+
+            JsonArray multipartJson = asArray(blockstate.get("multipart"));
+            if (multipartJson != null) {
+                for (JsonElement partElement : multipartJson) {
+                    JsonObject part = asObject(partElement);
+                    if (part == null)
+                        continue;
+                    JsonElement when = part.get("when");
+                    multipart.add(new Rule(when != null ? compileWhen(when) : ALWAYS, models(part.get("apply"))));
+                }
+            }
+        }
+
+        Set<ResourceId> resolve(Map<String, String> stateProps) {
+            return resolved.computeIfAbsent(toTuple(stateProps), this::evaluate);
+        }
+
+        private Set<ResourceId> evaluate(Tuple tuple) {
+            Set<ResourceId> out = new LinkedHashSet<>();
+            boolean matchedAny = false;
+            for (Rule rule : variants) {
+                if (!rule.predicate.test(tuple.values))
+                    continue;
+                matchedAny = true;
+                out.addAll(rule.models);
+            }
+            if (!matchedAny)
+                out.addAll(defaultVariant);
+            for (Rule rule : multipart)
+                if (rule.predicate.test(tuple.values))
+                    out.addAll(rule.models);
+            return Collections.unmodifiableSet(out);
+        }
+
+        private Tuple toTuple(Map<String, String> stateProps) {
+            int[] values = new int[slots.size()];
+            for (Map.Entry<String, Integer> slot : slots.entrySet()) {
+                Integer id = valueIds.get(slot.getValue()).get(stateProps.get(slot.getKey()));
+                values[slot.getValue()] = id != null ? id : -1;
+            }
+            return new Tuple(values);
+        }
+
+        /** {@code a=1,b=x|y}: every clause must match; a malformed clause never matches. */
+        private StatePredicate compileVariantKey(String variantKey) {
+            List<StatePredicate> clauses = new ArrayList<>();
+            for (String clauseRaw : variantKey.split(",")) {
+                String clause = clauseRaw.trim();
+                if (clause.isBlank())
+                    continue;
+                int equals = clause.indexOf('=');
+                if (equals <= 0 || equals >= clause.length() - 1)
+                    return NEVER;
+                clauses.add(compileClause(clause.substring(0, equals).trim(), clause.substring(equals + 1).trim()));
+            }
+            return all(clauses);
+        }
+
+        private StatePredicate compileWhen(JsonElement when) {
+            if (when == null || when.isJsonNull())
+                return ALWAYS;
+            JsonObject object = asObject(when);
+            if (object == null)
+                return NEVER;
+
+            JsonElement orElement = object.get("OR");
+            JsonElement andElement = object.get("AND");
+            if (orElement != null || andElement != null) {
+                JsonArray array = asArray(orElement != null ? orElement : andElement);
+                if (array == null || array.size() == 0)
+                    return NEVER;
+                List<StatePredicate> children = new ArrayList<>();
+                for (JsonElement element : array)
+                    children.add(compileWhen(element));
+                return orElement != null ? any(children) : all(children);
+            }
+
+            List<StatePredicate> clauses = new ArrayList<>();
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                String expectedRaw = asString(entry.getValue());
+                if (expectedRaw == null)
+                    return NEVER;
+                clauses.add(compileClause(entry.getKey(), expectedRaw));
+            }
+            return all(clauses);
+        }
+
+        /** {@code property} equals one of the {@code |}-separated values. */
+        private StatePredicate compileClause(String property, String expectedRaw) {
+            int slot = slots.computeIfAbsent(property, name -> {
+                valueIds.add(new HashMap<>());
+                return valueIds.size() - 1;
+            });
+            Map<String, Integer> ids = valueIds.get(slot);
+            BitSet allowed = new BitSet();
+            for (String option : expectedRaw.split("\\|")) {
+                int id = ids.computeIfAbsent(option.trim(), value -> ids.size());
+                allowed.set(id);
+            }
+            return values -> values[slot] >= 0 && allowed.get(values[slot]);
+        }
+
+        private List<ResourceId> models(JsonElement value) {
+            Set<ResourceId> out = new LinkedHashSet<>();
+            collectModelRefs(value, defaultNamespace, out);
+            return List.copyOf(out);
+        }
+
+        private static StatePredicate all(List<StatePredicate> parts) {
+            if (parts.isEmpty())
+                return ALWAYS;
+            if (parts.size() == 1)
+                return parts.get(0);
+            StatePredicate[] array = parts.toArray(new StatePredicate[0]);
+            return values -> {
+                for (StatePredicate part : array)
+                    if (!part.test(values))
+                        return false;
+                return true;
+            };
+        }
+
+        private static StatePredicate any(List<StatePredicate> parts) {
+            if (parts.size() == 1)
+                return parts.get(0);
+            StatePredicate[] array = parts.toArray(new StatePredicate[0]);
+            return values -> {
+                for (StatePredicate part : array)
+                    if (part.test(values))
+                        return true;
+                return false;
+            };
+        }
+
+        @FunctionalInterface
+        private interface StatePredicate {
+            boolean test(int[] values);
+        }
+
+        private record Rule(StatePredicate predicate, List<ResourceId> models) {}
+
+        private record Tuple(int[] values) {
+            @Override
+            public boolean equals(Object other) {
+                return other instanceof Tuple tuple && Arrays.equals(values, tuple.values);
+            }
+
+            @Override
+            public int hashCode() {
+                return Arrays.hashCode(values);
+            }
+        }
+    }
+
+    /** A resolver result and the asset paths that were found missing while computing it. */
+    private record Resolved<T>(T value, Set<String> missing) {
+        Resolved {
+            missing = Set.copyOf(missing);
+        }
+
+        T replay(Set<String> missingAssets) {
+            missingAssets.addAll(missing);
+            return value;
+        }
+    }
+
+    /**
+     * Resolves blockstates to models and models to textures, and exports texture files. Safe to share across
+     * worker threads.
+     *
+     * Blockstate, resolved-model and texture-export results are loaded single-flight: the first caller
+     * installs a future and computes the value, and concurrent callers wait for it, so each texture is copied
+     * once per batch. Those loaders never wait on each other, so cycles in model parents cannot deadlock. The
+     * recursive per-model texture maps are plain concurrent caches that may be computed twice under a race,
+     * with the same result.
+     *
+     * Every cached value carries the asset paths found missing while computing it, and every lookup adds them
+     * to the caller's {@code missingAssets}. A report therefore lists the same missing assets regardless of
+     * which file, or which thread, resolved an entry first.
+     */
+    static final class TextureResolver {
         private final ClassLoader classLoader = LtTextureExportCommand.class.getClassLoader();
-        private final Map<String, JsonObject> jsonObjectCache = new HashMap<>();
-        private final Set<String> jsonObjectMissing = new HashSet<>();
-        private final Map<ResourceId, Map<String, String>> modelTexturesCache = new HashMap<>();
-        private final Map<ResourceId, Set<String>> modelFaceTextureRefsCache = new HashMap<>();
-        private final Map<ResourceId, Set<ResourceId>> modelResolvedTexturesCache = new HashMap<>();
-        private final Map<String, Set<ResourceId>> blockStateModelsCache = new HashMap<>();
-        private final Map<ResourceId, TextureExportInfo> exportCache = new HashMap<>();
+        private final TextureIndex index;
+        private final Map<String, Optional<JsonObject>> jsonObjectCache = new ConcurrentHashMap<>();
+        private final Map<String, CompiledBlockState> compiledBlockStates = new ConcurrentHashMap<>();
+        private final Map<ResourceId, Resolved<Map<String, String>>> modelTexturesCache = new ConcurrentHashMap<>();
+        private final Map<ResourceId, Resolved<Set<String>>> modelFaceTextureRefsCache = new ConcurrentHashMap<>();
+        private final Map<ResourceId, CompletableFuture<Resolved<Set<ResourceId>>>> modelResolvedTexturesCache = new ConcurrentHashMap<>();
+        private final Map<String, CompletableFuture<Resolved<Set<ResourceId>>>> blockStateModelsCache = new ConcurrentHashMap<>();
+        private final Map<ResourceId, CompletableFuture<Resolved<TextureExportInfo>>> exportCache = new ConcurrentHashMap<>();
+
+        private final TextureFiles files;
+        private final AssetIndex assets;
+
+        private TextureResolver(TextureIndex index, TextureFiles files, AssetIndex assets) {
+            this.index = index;
+            this.files = files;
+            this.assets = assets;
+        }
+
+        /**
+         * Resolver backed by the persistent index and texture file manifest in {@code outputDir}. Texture files
+         * are hard-linked from {@code storeDir} when it is not null.
+         */
+        static TextureResolver open(Path outputDir, Path storeDir) {
+            AssetIndex assets = AssetIndex.acquire();
+            return new TextureResolver(
+                    TextureIndex.open(outputDir.resolve(".lt-texture-index.json"), assets.packSignatures()),
+                    TextureFiles.open(outputDir, storeDir),
+                    assets);
+        }
+
+        /**
+         * Saves the index and the texture file manifest. Either only costs the next run its warm start when it
+         * fails to save, so neither fails the batch.
+         */
+        void save() {
+            try {
+                index.save();
+            } catch (IOException e) {
+                LittleTilesParityExporter.LOGGER.warn("failed to save texture index", e);
+            }
+            try {
+                files.save();
+            } catch (IOException e) {
+                LittleTilesParityExporter.LOGGER.warn("failed to save texture file manifest", e);
+            }
+        }
+
+        /** Saves, then releases the asset index; the resolver must not be used afterwards. */
+        void close() {
+            save();
+            assets.release();
+        }
+
+        String describeIndex() {
+            return index.describe();
+        }
+
+        String describeFiles() {
+            return files.describe();
+        }
+
+        String describeAssets() {
+            return assets.describe();
+        }
 
         Set<ResourceId> resolveModelsForState(BlockStateRef state, Set<String> missingAssets) {
             String cacheKey = state.canonicalState();
-            if (blockStateModelsCache.containsKey(cacheKey))
-                return blockStateModelsCache.get(cacheKey);
+            return singleFlight(blockStateModelsCache, cacheKey, () -> {
+                TextureIndex.Entry indexed = index.stateModels(cacheKey);
+                if (indexed != null)
+                    return new Resolved<>(toResourceIds(indexed.values()), Set.copyOf(indexed.missing()));
+                Set<String> missed = new LinkedHashSet<>();
+                Set<ResourceId> models = resolveModelsForStateUncached(state, missed);
+                index.putStateModels(cacheKey, toStrings(models), missed);
+                return new Resolved<>(models, missed);
+            }).replay(missingAssets);
+        }
 
+        private Set<ResourceId> resolveModelsForStateUncached(BlockStateRef state, Set<String> missingAssets) {
             ResourceId blockId = new ResourceId(state.namespace(), state.path());
 
-            Set<ResourceId> models = new LinkedHashSet<>();
             String resourcePath = blockStatePath(blockId);
             JsonObject blockstate = loadJsonObject(resourcePath, missingAssets);
-            if (blockstate == null) {
-                blockStateModelsCache.put(cacheKey, Set.of());
+            if (blockstate == null)
                 return Set.of();
-            }
-
-            JsonObject variants = asObject(blockstate.get("variants"));
-            if (variants != null)
-                collectVariantModels(variants, state.properties(), blockId.namespace(), models);
 
-            JsonArray multipart = asArray(blockstate.get("multipart"));
-            if (multipart != null)
-                collectMultipartModels(multipart, state.properties(), blockId.namespace(), models);
-
-            Set<ResourceId> frozen = Collections.unmodifiableSet(new LinkedHashSet<>(models));
-            blockStateModelsCache.put(cacheKey, frozen);
-            return frozen;
+            CompiledBlockState compiled = compiledBlockStates.computeIfAbsent(
+                    resourcePath, path -> new CompiledBlockState(blockstate, blockId.namespace()));
+            return compiled.resolve(state.properties());
         }
 
         Set<ResourceId> resolveTexturesForModels(Set<ResourceId> models, Set<String> missingAssets) {
@@ -552,11 +1049,24 @@ public final class LtTextureExportCommand {
             return out;
         }
 
+        /**
+         * Exports a texture once per resolver. The resolver outlives a batch in the watcher and the HTTP endpoint,
+         * so a remembered export whose files were deleted since is exported again.
+         */
         TextureExportInfo exportTexture(ResourceId textureId, Path texturesRoot, Set<String> missingAssets) {
-            TextureExportInfo cached = exportCache.get(textureId);
-            if (cached != null)
-                return cached;
+            Supplier<Resolved<TextureExportInfo>> loader = () -> {
+                Set<String> missed = new LinkedHashSet<>();
+                return new Resolved<>(exportTextureUncached(textureId, texturesRoot, missed), missed);
+            };
+            Resolved<TextureExportInfo> resolved = singleFlight(exportCache, textureId, loader);
+            if (!resolved.value().outputsExist(texturesRoot)) {
+                exportCache.remove(textureId);
+                resolved = singleFlight(exportCache, textureId, loader);
+            }
+            return resolved.replay(missingAssets);
+        }
 
+        private TextureExportInfo exportTextureUncached(ResourceId textureId, Path texturesRoot, Set<String> missingAssets) {
             String sourcePath = texturePath(textureId);
             String uri = "textures/" + textureId.namespace() + "/" + textureId.path() + ".png";
             Path outPath = texturesRoot.resolve(textureId.namespace()).resolve(textureId.path() + ".png");
@@ -565,11 +1075,8 @@ public final class LtTextureExportCommand {
             Path normalizedOutPath = outPath.normalize();
             Path normalizedOutMetaPath = outMetaPath.normalize();
 
-            if (!normalizedOutPath.startsWith(normalizedRoot) || !normalizedOutMetaPath.startsWith(normalizedRoot)) {
-                TextureExportInfo info = new TextureExportInfo(textureId, sourcePath, uri, false, false);
-                exportCache.put(textureId, info);
-                return info;
-            }
+            if (!normalizedOutPath.startsWith(normalizedRoot) || !normalizedOutMetaPath.startsWith(normalizedRoot))
+                return new TextureExportInfo(textureId, sourcePath, uri, false, false);
 
             boolean exported = false;
             boolean hasMcmeta = false;
@@ -577,42 +1084,42 @@ public final class LtTextureExportCommand {
             try (InputStream texture = openResource(sourcePath)) {
                 if (texture == null) {
                     missingAssets.add(sourcePath);
-                    TextureExportInfo info = new TextureExportInfo(textureId, sourcePath, uri, false, false);
-                    exportCache.put(textureId, info);
-                    return info;
+                    return new TextureExportInfo(textureId, sourcePath, uri, false, false);
                 }
 
-                Files.createDirectories(normalizedOutPath.getParent());
-                Files.copy(texture, normalizedOutPath, StandardCopyOption.REPLACE_EXISTING);
+                files.write(texture, normalizedOutPath);
                 exported = true;
             } catch (Exception e) {
                 LittleTilesParityExporter.LOGGER.warn("lt-texture-export failed to copy texture {}: {}", sourcePath, e.getMessage());
-                TextureExportInfo info = new TextureExportInfo(textureId, sourcePath, uri, false, false);
-                exportCache.put(textureId, info);
-                return info;
+                return new TextureExportInfo(textureId, sourcePath, uri, false, false);
             }
 
             String metaSourcePath = sourcePath + ".mcmeta";
             try (InputStream meta = openResource(metaSourcePath)) {
                 if (meta != null) {
-                    Files.createDirectories(normalizedOutMetaPath.getParent());
-                    Files.copy(meta, normalizedOutMetaPath, StandardCopyOption.REPLACE_EXISTING);
+                    files.write(meta, normalizedOutMetaPath);
                     hasMcmeta = true;
                 }
             } catch (Exception e) {
                 LittleTilesParityExporter.LOGGER.warn("lt-texture-export failed to copy texture metadata {}: {}", metaSourcePath, e.getMessage());
             }
 
-            TextureExportInfo info = new TextureExportInfo(textureId, sourcePath, uri, exported, hasMcmeta);
-            exportCache.put(textureId, info);
-            return info;
+            return new TextureExportInfo(textureId, sourcePath, uri, exported, hasMcmeta);
         }
 
         private Set<ResourceId> resolveTexturesForModel(ResourceId modelId, Set<String> missingAssets) {
-            Set<ResourceId> cached = modelResolvedTexturesCache.get(modelId);
-            if (cached != null)
-                return cached;
+            return singleFlight(modelResolvedTexturesCache, modelId, () -> {
+                TextureIndex.Entry indexed = index.modelTextures(modelId.toString());
+                if (indexed != null)
+                    return new Resolved<>(toResourceIds(indexed.values()), Set.copyOf(indexed.missing()));
+                Set<String> missed = new LinkedHashSet<>();
+                Set<ResourceId> textures = resolveTexturesForModelUncached(modelId, missed);
+                index.putModelTextures(modelId.toString(), toStrings(textures), missed);
+                return new Resolved<>(textures, missed);
+            }).replay(missingAssets);
+        }
 
+        private Set<ResourceId> resolveTexturesForModelUncached(ResourceId modelId, Set<String> missingAssets) {
             Map<String, String> mergedTextures = resolveModelTextures(modelId, missingAssets, new HashSet<>());
             Set<String> refs = new LinkedHashSet<>(mergedTextures.values());
             refs.addAll(resolveModelFaceTextureRefs(modelId, missingAssets, new HashSet<>()));
@@ -624,28 +1131,42 @@ public final class LtTextureExportCommand {
                     continue;
                 out.add(ResourceId.parse(resolved, modelId.namespace()));
             }
+            return Collections.unmodifiableSet(out);
+        }
 
-            Set<ResourceId> frozen = Collections.unmodifiableSet(out);
-            modelResolvedTexturesCache.put(modelId, frozen);
-            return frozen;
+        private static Set<ResourceId> toResourceIds(List<String> ids) {
+            Set<ResourceId> out = new LinkedHashSet<>();
+            for (String id : ids)
+                out.add(ResourceId.parse(id, "minecraft"));
+            return Collections.unmodifiableSet(out);
         }
 
+        private static List<String> toStrings(Set<ResourceId> ids) {
+            List<String> out = new ArrayList<>(ids.size());
+            for (ResourceId id : ids)
+                out.add(id.toString());
+            return out;
+        }
+
+        /** {@code visiting} is per call chain; a parent cycle resolves to an empty map at the repeated model. */
         private Map<String, String> resolveModelTextures(
                 ResourceId modelId,
                 Set<String> missingAssets,
                 Set<ResourceId> visiting) {
-            Map<String, String> cached = modelTexturesCache.get(modelId);
+            Resolved<Map<String, String>> cached = modelTexturesCache.get(modelId);
             if (cached != null)
-                return cached;
+                return cached.replay(missingAssets);
 
             if (!visiting.add(modelId))
                 return Map.of();
 
+            Set<String> missed = new LinkedHashSet<>();
             String resourcePath = modelPath(modelId);
-            JsonObject model = loadJsonObject(resourcePath, missingAssets);
+            JsonObject model = loadJsonObject(resourcePath, missed);
             if (model == null) {
                 visiting.remove(modelId);
-                modelTexturesCache.put(modelId, Map.of());
+                modelTexturesCache.putIfAbsent(modelId, new Resolved<>(Map.of(), missed));
+                missingAssets.addAll(missed);
                 return Map.of();
             }
 
@@ -653,7 +1174,7 @@ public final class LtTextureExportCommand {
             String parentRaw = asString(model.get("parent"));
             if (parentRaw != null && !parentRaw.startsWith("builtin/")) {
                 ResourceId parent = ResourceId.parse(parentRaw, modelId.namespace());
-                out.putAll(resolveModelTextures(parent, missingAssets, visiting));
+                out.putAll(resolveModelTextures(parent, missed, visiting));
             }
 
             JsonObject textures = asObject(model.get("textures"));
@@ -668,7 +1189,8 @@ public final class LtTextureExportCommand {
 
             visiting.remove(modelId);
             Map<String, String> frozen = Collections.unmodifiableMap(new LinkedHashMap<>(out));
-            modelTexturesCache.put(modelId, frozen);
+            modelTexturesCache.putIfAbsent(modelId, new Resolved<>(frozen, missed));
+            missingAssets.addAll(missed);
             return frozen;
         }
 
@@ -676,18 +1198,20 @@ public final class LtTextureExportCommand {
                 ResourceId modelId,
                 Set<String> missingAssets,
                 Set<ResourceId> visiting) {
-            Set<String> cached = modelFaceTextureRefsCache.get(modelId);
+            Resolved<Set<String>> cached = modelFaceTextureRefsCache.get(modelId);
             if (cached != null)
-                return cached;
+                return cached.replay(missingAssets);
 
             if (!visiting.add(modelId))
                 return Set.of();
 
+            Set<String> missed = new LinkedHashSet<>();
             String resourcePath = modelPath(modelId);
-            JsonObject model = loadJsonObject(resourcePath, missingAssets);
+            JsonObject model = loadJsonObject(resourcePath, missed);
             if (model == null) {
                 visiting.remove(modelId);
-                modelFaceTextureRefsCache.put(modelId, Set.of());
+                modelFaceTextureRefsCache.putIfAbsent(modelId, new Resolved<>(Set.of(), missed));
+                missingAssets.addAll(missed);
                 return Set.of();
             }
 
@@ -715,87 +1239,71 @@ public final class LtTextureExportCommand {
             String parentRaw = asString(model.get("parent"));
             if (parentRaw != null && !parentRaw.startsWith("builtin/")) {
                 ResourceId parent = ResourceId.parse(parentRaw, modelId.namespace());
-                out.addAll(resolveModelFaceTextureRefs(parent, missingAssets, visiting));
+                out.addAll(resolveModelFaceTextureRefs(parent, missed, visiting));
             }
 
             visiting.remove(modelId);
             Set<String> frozen = Collections.unmodifiableSet(new LinkedHashSet<>(out));
-            modelFaceTextureRefsCache.put(modelId, frozen);
+            modelFaceTextureRefsCache.putIfAbsent(modelId, new Resolved<>(frozen, missed));
+            missingAssets.addAll(missed);
             return frozen;
         }
 
-        private void collectVariantModels(
-                JsonObject variants,
-                Map<String, String> stateProps,
-                String defaultNamespace,
-                Set<ResourceId> out) {
-            boolean matchedAny = false;
-            for (Map.Entry<String, JsonElement> entry : variants.entrySet()) {
-                String key = entry.getKey();
-                if (key == null || key.isBlank())
-                    continue;
-                if (!variantMatchesState(key, stateProps))
-                    continue;
-                matchedAny = true;
-                collectModelRefs(entry.getValue(), defaultNamespace, out);
-            }
-
-            if (!matchedAny && variants.has(""))
-                collectModelRefs(variants.get(""), defaultNamespace, out);
-        }
-
-        private void collectMultipartModels(
-                JsonArray multipart,
-                Map<String, String> stateProps,
-                String defaultNamespace,
-                Set<ResourceId> out) {
-            for (JsonElement partElement : multipart) {
-                JsonObject part = asObject(partElement);
-                if (part == null)
-                    continue;
-
-                JsonElement when = part.get("when");
-                if (when != null && !whenMatchesState(when, stateProps))
-                    continue;
-
-                collectModelRefs(part.get("apply"), defaultNamespace, out);
-            }
-        }
-
+        /** Leaf loader, so it can run inside {@code computeIfAbsent} without re-entering the map. */
         private JsonObject loadJsonObject(String resourcePath, Set<String> missingAssets) {
-            if (jsonObjectCache.containsKey(resourcePath))
-                return jsonObjectCache.get(resourcePath);
-            if (jsonObjectMissing.contains(resourcePath)) {
+            Optional<JsonObject> loaded = jsonObjectCache.computeIfAbsent(resourcePath, this::readJsonObject);
+            if (loaded.isEmpty())
                 missingAssets.add(resourcePath);
-                return null;
-            }
+            return loaded.orElse(null);
+        }
 
+        private Optional<JsonObject> readJsonObject(String resourcePath) {
             try (InputStream stream = openResource(resourcePath)) {
-                if (stream == null) {
-                    jsonObjectMissing.add(resourcePath);
-                    missingAssets.add(resourcePath);
-                    return null;
-                }
+                if (stream == null)
+                    return Optional.empty();
                 try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
-                    JsonElement parsed = JsonParser.parseReader(reader);
-                    JsonObject object = asObject(parsed);
-                    if (object == null) {
-                        jsonObjectMissing.add(resourcePath);
-                        missingAssets.add(resourcePath);
-                        return null;
-                    }
-                    jsonObjectCache.put(resourcePath, object);
-                    return object;
+                    return Optional.ofNullable(asObject(JsonParser.parseReader(reader)));
                 }
             } catch (Exception e) {
-                jsonObjectMissing.add(resourcePath);
-                missingAssets.add(resourcePath);
                 LittleTilesParityExporter.LOGGER.warn("lt-texture-export failed to parse JSON resource {}: {}", resourcePath, e.getMessage());
-                return null;
+                return Optional.empty();
+            }
+        }
+
+        /**
+         * Returns the value for {@code key}, computing it on the calling thread if no other thread has started
+         * it yet and waiting for that thread otherwise.
+         */
+        private static <K, V> V singleFlight(Map<K, CompletableFuture<V>> cache, K key, Supplier<V> loader) {
+            CompletableFuture<V> pending = cache.get(key);
+            if (pending == null) {
+                CompletableFuture<V> created = new CompletableFuture<>();
+                pending = cache.putIfAbsent(key, created);
+                if (pending == null) {
+                    try {
+                        created.complete(loader.get());
+                    } catch (RuntimeException | Error e) {
+                        cache.remove(key, created);
+                        created.completeExceptionally(e);
+                        throw e;
+                    }
+                    return created.join();
+                }
+            }
+            try {
+                return pending.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause)
+                    throw cause;
+                throw e;
             }
         }
 
-        private InputStream openResource(String resourcePath) {
+        /** Served from the asset index; the class loaders are only probed when the index was built without mod files. */
+        private InputStream openResource(String resourcePath) throws IOException {
+            InputStream indexed = assets.open(resourcePath);
+            if (indexed != null || assets.isComplete())
+                return indexed;
             String normalized = resourcePath.startsWith("/") ? resourcePath.substring(1) : resourcePath;
             InputStream stream = classLoader.getResourceAsStream(normalized);
             if (stream != null)
@@ -824,83 +1332,6 @@ public final class LtTextureExportCommand {
         out.add(ResourceId.parse(model, defaultNamespace));
     }
 
-    private static boolean variantMatchesState(String variantKey, Map<String, String> stateProps) {
-        if (variantKey == null || variantKey.isBlank())
-            return true;
-        String[] clauses = variantKey.split(",");
-        for (String clauseRaw : clauses) {
-            String clause = clauseRaw.trim();
-            if (clause.isBlank())
-                continue;
-            int equals = clause.indexOf('=');
-            if (equals <= 0 || equals >= clause.length() - 1)
-                return false;
-            String key = clause.substring(0, equals).trim();
-            String expectedRaw = clause.substring(equals + 1).trim();
-            String actual = stateProps.get(key);
-            if (actual == null)
-                return false;
-            if (!propertyValueMatches(expectedRaw, actual))
-                return false;
-        }
-        return true;
-    }
-
-    private static boolean whenMatchesState(JsonElement when, Map<String, String> stateProps) {
-        if (when == null || when.isJsonNull())
-            return true;
-
-        JsonObject object = asObject(when);
-        if (object == null)
-            return false;
-
-        JsonElement orElement = object.get("OR");
-        if (orElement != null) {
-            JsonArray array = asArray(orElement);
-            if (array == null || array.size() == 0)
-                return false;
-            for (JsonElement element : array) {
-                if (whenMatchesState(element, stateProps))
-                    return true;
-            }
-            return false;
-        }
-
-        JsonElement andElement = object.get("AND");
-        if (andElement != null) {
-            JsonArray array = asArray(andElement);
-            if (array == null || array.size() == 0)
-                return false;
-            for (JsonElement element : array) {
-                if (!whenMatchesState(element, stateProps))
-                    return false;
-            }
-            return true;
-        }
-
-        for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
-            String key = entry.getKey();
-            if ("OR".equals(key) || "AND".equals(key))
-                continue;
-            String actual = stateProps.get(key);
-            if (actual == null)
-                return false;
-            String expectedRaw = asString(entry.getValue());
-            if (expectedRaw == null || !propertyValueMatches(expectedRaw, actual))
-                return false;
-        }
-        return true;
-    }
-
-    private static boolean propertyValueMatches(String expectedRaw, String actual) {
-        String[] options = expectedRaw.split("\\|");
-        for (String option : options) {
-            if (actual.equals(option.trim()))
-                return true;
-        }
-        return false;
-    }
-
     private static String resolveTextureRef(String value, Map<String, String> textureMap, Set<String> visiting) {
         if (value == null || value.isBlank())
             return null;
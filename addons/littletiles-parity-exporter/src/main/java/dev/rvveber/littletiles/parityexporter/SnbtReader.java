@@ -0,0 +1,358 @@
+package dev.rvveber.littletiles.parityexporter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import net.minecraft.nbt.ByteArrayTag;
+import net.minecraft.nbt.ByteTag;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.DoubleTag;
+import net.minecraft.nbt.FloatTag;
+import net.minecraft.nbt.IntArrayTag;
+import net.minecraft.nbt.IntTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.LongArrayTag;
+import net.minecraft.nbt.LongTag;
+import net.minecraft.nbt.ShortTag;
+import net.minecraft.nbt.StringTag;
+import net.minecraft.nbt.Tag;
+
+/**
+ * Single-pass SNBT reader that builds a {@link CompoundTag} straight from a character stream.
+ *
+ * Accepts the same grammar as {@code TagParser.parseTag} (quoted and unquoted strings, numeric
+ * suffixes, {@code true}/{@code false}, typed {@code [B;]}/{@code [I;]}/{@code [L;]} arrays,
+ * homogeneous lists, trailing separators) and types unquoted values with the same patterns, so
+ * the resulting tag is identical. The input is never held as one string: only a fixed-size char
+ * window and the token being read are kept besides the tag tree itself.
+ */
+final class SnbtReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_DEPTH = 512;
+
+    private static final Pattern DOUBLE_PATTERN_NOSUFFIX = Pattern.compile("[-+]?(?:[0-9]+[.]|[0-9]*[.][0-9]+)(?:e[-+]?[0-9]+)?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DOUBLE_PATTERN = Pattern.compile("[-+]?(?:[0-9]+[.]?|[0-9]*[.][0-9]+)(?:e[-+]?[0-9]+)?d", Pattern.CASE_INSENSITIVE);
+    private static final Pattern FLOAT_PATTERN = Pattern.compile("[-+]?(?:[0-9]+[.]?|[0-9]*[.][0-9]+)(?:e[-+]?[0-9]+)?f", Pattern.CASE_INSENSITIVE);
+    private static final Pattern BYTE_PATTERN = Pattern.compile("[-+]?(?:0|[1-9][0-9]*)b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LONG_PATTERN = Pattern.compile("[-+]?(?:0|[1-9][0-9]*)l", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SHORT_PATTERN = Pattern.compile("[-+]?(?:0|[1-9][0-9]*)s", Pattern.CASE_INSENSITIVE);
+    private static final Pattern INT_PATTERN = Pattern.compile("[-+]?(?:0|[1-9][0-9]*)");
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder token = new StringBuilder();
+    private int position;
+    private int limit;
+    private long offset;
+    private int depth;
+
+    private SnbtReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    static CompoundTag read(Path path) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+
+    static CompoundTag read(Reader reader) throws IOException {
+        SnbtReader snbt = new SnbtReader(reader);
+        CompoundTag out = snbt.readCompound();
+        snbt.skipWhitespace();
+        if (snbt.peek(0) >= 0)
+            throw snbt.error("unexpected trailing data");
+        return out;
+    }
+
+    private Tag readValue() throws IOException {
+        skipWhitespace();
+        int next = peek(0);
+        if (next < 0)
+            throw error("expected value");
+        if (next == '{')
+            return readCompound();
+        if (next == '[')
+            return readListOrArray();
+        return readTypedValue();
+    }
+
+    private CompoundTag readCompound() throws IOException {
+        expect('{');
+        enter();
+        CompoundTag out = new CompoundTag();
+        skipWhitespace();
+        while (peek(0) != '}') {
+            skipWhitespace();
+            if (peek(0) < 0)
+                throw error("expected key");
+            String key = readString();
+            if (key.isEmpty())
+                throw error("expected key");
+            expect(':');
+            out.put(key, readValue());
+            if (!readSeparator())
+                break;
+            if (peek(0) < 0)
+                throw error("expected key");
+        }
+        expect('}');
+        depth--;
+        return out;
+    }
+
+    private Tag readListOrArray() throws IOException {
+        skipWhitespace();
+        int type = peek(1);
+        if (type >= 0 && !isQuote(type) && peek(2) == ';')
+            return readArray();
+        return readList();
+    }
+
+    private ListTag readList() throws IOException {
+        expect('[');
+        enter();
+        skipWhitespace();
+        if (peek(0) < 0)
+            throw error("expected value");
+        ListTag out = new ListTag();
+        int elementType = -1;
+        while (peek(0) != ']') {
+            Tag value = readValue();
+            if (elementType < 0)
+                elementType = value.getId();
+            else if (value.getId() != elementType)
+                throw error("cannot insert tag of type " + value.getId() + " into list of type " + elementType);
+            out.add(value);
+            if (!readSeparator())
+                break;
+            if (peek(0) < 0)
+                throw error("expected value");
+        }
+        expect(']');
+        depth--;
+        return out;
+    }
+
+    private Tag readArray() throws IOException {
+        expect('[');
+        int type = next();
+        next();
+        skipWhitespace();
+        if (peek(0) < 0)
+            throw error("expected value");
+        return switch (type) {
+            case 'B' -> new ByteArrayTag(toBytes(readArrayValues(ByteTag.class)));
+            case 'I' -> new IntArrayTag(toInts(readArrayValues(IntTag.class)));
+            case 'L' -> new LongArrayTag(toLongs(readArrayValues(LongTag.class)));
+            default -> throw error("invalid array type '" + (char) type + "'");
+        };
+    }
+
+    private LongBuffer readArrayValues(Class<? extends Tag> elementType) throws IOException {
+        LongBuffer values = new LongBuffer();
+        while (peek(0) != ']') {
+            Tag value = readValue();
+            if (!elementType.isInstance(value))
+                throw error("cannot insert tag of type " + value.getId() + " into " + elementType.getSimpleName() + " array");
+            if (value instanceof ByteTag byteTag)
+                values.add(byteTag.getAsByte());
+            else if (value instanceof IntTag intTag)
+                values.add(intTag.getAsInt());
+            else
+                values.add(((LongTag) value).getAsLong());
+            if (!readSeparator())
+                break;
+            if (peek(0) < 0)
+                throw error("expected value");
+        }
+        expect(']');
+        return values;
+    }
+
+    private Tag readTypedValue() throws IOException {
+        skipWhitespace();
+        if (isQuote(peek(0)))
+            return StringTag.valueOf(readQuotedString());
+        String value = readUnquotedString();
+        if (value.isEmpty())
+            throw error("expected value");
+        return type(value);
+    }
+
+    /** Types an unquoted value exactly like {@code TagParser#type}. */
+    private static Tag type(String value) {
+        try {
+            if (FLOAT_PATTERN.matcher(value).matches())
+                return FloatTag.valueOf(Float.parseFloat(value.substring(0, value.length() - 1)));
+            if (BYTE_PATTERN.matcher(value).matches())
+                return ByteTag.valueOf(Byte.parseByte(value.substring(0, value.length() - 1)));
+            if (LONG_PATTERN.matcher(value).matches())
+                return LongTag.valueOf(Long.parseLong(value.substring(0, value.length() - 1)));
+            if (SHORT_PATTERN.matcher(value).matches())
+                return ShortTag.valueOf(Short.parseShort(value.substring(0, value.length() - 1)));
+            if (INT_PATTERN.matcher(value).matches())
+                return IntTag.valueOf(Integer.parseInt(value));
+            if (DOUBLE_PATTERN.matcher(value).matches())
+                return DoubleTag.valueOf(Double.parseDouble(value.substring(0, value.length() - 1)));
+            if (DOUBLE_PATTERN_NOSUFFIX.matcher(value).matches())
+                return DoubleTag.valueOf(Double.parseDouble(value));
+            if ("true".equalsIgnoreCase(value))
+                return ByteTag.valueOf((byte) 1);
+            if ("false".equalsIgnoreCase(value))
+                return ByteTag.valueOf((byte) 0);
+        } catch (NumberFormatException ignored) {}
+        return StringTag.valueOf(value);
+    }
+
+    private String readString() throws IOException {
+        if (isQuote(peek(0)))
+            return readQuotedString();
+        return readUnquotedString();
+    }
+
+    private String readUnquotedString() throws IOException {
+        token.setLength(0);
+        while (isAllowedInUnquotedString(peek(0)))
+            token.append((char) next());
+        return token.toString();
+    }
+
+    /** Brigadier quoting rules: only the opening quote and the backslash may be escaped. */
+    private String readQuotedString() throws IOException {
+        int quote = next();
+        token.setLength(0);
+        boolean escaped = false;
+        while (true) {
+            int c = next();
+            if (c < 0)
+                throw error("unclosed quoted string");
+            if (escaped) {
+                if (c != quote && c != '\\')
+                    throw error("invalid escape sequence '\\" + (char) c + "' in quoted string");
+                token.append((char) c);
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == quote) {
+                return token.toString();
+            } else {
+                token.append((char) c);
+            }
+        }
+    }
+
+    private boolean readSeparator() throws IOException {
+        skipWhitespace();
+        if (peek(0) == ',') {
+            next();
+            skipWhitespace();
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char expected) throws IOException {
+        skipWhitespace();
+        if (peek(0) != expected)
+            throw error("expected '" + expected + "'");
+        next();
+    }
+
+    private void enter() throws IOException {
+        if (++depth > MAX_DEPTH)
+            throw error("tag nested deeper than " + MAX_DEPTH);
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (true) {
+            int c = peek(0);
+            if (c < 0 || !Character.isWhitespace(c))
+                return;
+            next();
+        }
+    }
+
+    private static boolean isQuote(int c) {
+        return c == '"' || c == '\'';
+    }
+
+    private static boolean isAllowedInUnquotedString(int c) {
+        return c >= '0' && c <= '9'
+                || c >= 'A' && c <= 'Z'
+                || c >= 'a' && c <= 'z'
+                || c == '_' || c == '-' || c == '.' || c == '+';
+    }
+
+    /** Returns the char {@code ahead} positions past the cursor without consuming it, or -1 at end of input. */
+    private int peek(int ahead) throws IOException {
+        if (position + ahead >= limit && !fill(ahead + 1))
+            return -1;
+        return buffer[position + ahead];
+    }
+
+    private int next() throws IOException {
+        int c = peek(0);
+        if (c >= 0) {
+            position++;
+            offset++;
+        }
+        return c;
+    }
+
+    /** Makes at least {@code wanted} chars available after the cursor; false if the input ends first. */
+    private boolean fill(int wanted) throws IOException {
+        int available = limit - position;
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, available);
+            position = 0;
+            limit = available;
+        }
+        while (limit < wanted) {
+            int read = reader.read(buffer, limit, buffer.length - limit);
+            if (read < 0)
+                return false;
+            limit += read;
+        }
+        return true;
+    }
+
+    private IOException error(String message) {
+        return new IOException("SNBT syntax error at char " + offset + ": " + message);
+    }
+
+    private static byte[] toBytes(LongBuffer values) {
+        byte[] out = new byte[values.size];
+        for (int i = 0; i < values.size; i++)
+            out[i] = (byte) values.data[i];
+        return out;
+    }
+
+    private static int[] toInts(LongBuffer values) {
+        int[] out = new int[values.size];
+        for (int i = 0; i < values.size; i++)
+            out[i] = (int) values.data[i];
+        return out;
+    }
+
+    private static long[] toLongs(LongBuffer values) {
+        return Arrays.copyOf(values.data, values.size);
+    }
+
+    private static final class LongBuffer {
+        long[] data = new long[16];
+        int size;
+
+        void add(long value) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, size * 2);
+            data[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package dev.rvveber.littletiles.parityexporter;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Packs exported texture PNGs into power-of-two atlas pages and describes where each texture landed.
+ *
+ * Textures are placed whole with shelf packing, tallest first, so an animated texture keeps its frame strip
+ * intact and frame {@code n} sits {@code n} frame heights below frame 0. A page is as wide as the smallest
+ * power of two that fits the widest texture and the square root of the remaining area, and as tall as the
+ * smallest power of two that fits its shelves; textures that no longer fit within {@link #MAX_SIZE} start a new
+ * page. Every texture is surrounded by a {@link #GUTTER}-pixel border repeating its edge pixels, so mipmaps and
+ * linear filtering do not pull in a neighbour's colours. UVs use a top-left origin, as glTF does, and point at
+ * texel centres.
+ */
+final class TextureAtlas {
+
+    static final int MAX_SIZE = 4096;
+    static final int GUTTER = 1;
+
+    private TextureAtlas() {}
+
+    /** A texture to pack: its id, exported PNG, and the {@code animation} section of its {@code .mcmeta} or null. */
+    record Source(String id, Path png, JsonObject animation) {}
+
+    /** The report section and the page files written. */
+    record Result(JsonObject json, List<Path> pages) {}
+
+    /**
+     * Packs {@code sources} into pages written as {@code <atlasDir>/<baseName>.<page>.png}, and deletes pages of
+     * an earlier run past the new page count; page uris in the report are relative to {@code outputDir}.
+     */
+    static Result pack(List<Source> sources, Path outputDir, Path atlasDir, String baseName) throws IOException {
+        List<Sprite> pending = new ArrayList<>();
+        JsonArray unpacked = new JsonArray();
+        for (Source source : sources) {
+            BufferedImage image = ImageIO.read(source.png().toFile());
+            if (image == null || image.getWidth() + 2 * GUTTER > MAX_SIZE || image.getHeight() + 2 * GUTTER > MAX_SIZE) {
+                unpacked.add(source.id());
+                continue;
+            }
+            pending.add(new Sprite(source, image));
+        }
+        pending.sort(Comparator.comparingInt((Sprite sprite) -> sprite.image.getHeight()).reversed()
+                .thenComparing(Comparator.comparingInt((Sprite sprite) -> sprite.image.getWidth()).reversed())
+                .thenComparing(sprite -> sprite.source.id()));
+
+        JsonArray pagesJson = new JsonArray();
+        JsonObject entries = new JsonObject();
+        List<Path> pages = new ArrayList<>();
+        while (!pending.isEmpty()) {
+            int page = pages.size();
+            List<Sprite> placed = new ArrayList<>();
+            pending = placeShelves(pending, placed);
+            int width = 1;
+            int height = 1;
+            for (Sprite sprite : placed) {
+                width = Math.max(width, sprite.x + sprite.image.getWidth() + GUTTER);
+                height = Math.max(height, sprite.y + sprite.image.getHeight() + GUTTER);
+            }
+            width = powerOfTwo(width);
+            height = powerOfTwo(height);
+
+            BufferedImage atlas = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            for (Sprite sprite : placed) {
+                drawExtruded(atlas, sprite);
+                entries.add(sprite.source.id(), sprite.toJson(page, width, height));
+            }
+
+            Path pagePath = atlasDir.resolve(baseName + "." + page + ".png");
+            writePng(atlas, pagePath);
+            pages.add(pagePath);
+            JsonObject pageJson = new JsonObject();
+            pageJson.addProperty("uri", outputDir.relativize(pagePath).toString().replace('\\', '/'));
+            pageJson.addProperty("width", width);
+            pageJson.addProperty("height", height);
+            pagesJson.add(pageJson);
+        }
+        deleteStalePages(atlasDir, baseName, pages.size());
+
+        JsonObject out = new JsonObject();
+        out.addProperty("uvOrigin", "top-left");
+        out.add("pages", pagesJson);
+        out.add("entries", entries);
+        out.add("unpacked", unpacked);
+        return new Result(out, pages);
+    }
+
+    /**
+     * Places sprites on shelves of one page into {@code placed}; returns the sprites left for the next page. Each
+     * sprite takes a cell with a gutter on every side, and its position is that of the image inside the cell.
+     */
+    private static List<Sprite> placeShelves(List<Sprite> sprites, List<Sprite> placed) {
+        long area = 0;
+        int widest = 1;
+        for (Sprite sprite : sprites) {
+            area += (long) (sprite.image.getWidth() + 2 * GUTTER) * (sprite.image.getHeight() + 2 * GUTTER);
+            widest = Math.max(widest, sprite.image.getWidth() + 2 * GUTTER);
+        }
+        int pageWidth = Math.min(MAX_SIZE, powerOfTwo(Math.max(widest, (int) Math.ceil(Math.sqrt(area)))));
+
+        List<Sprite> leftover = new ArrayList<>();
+        int x = 0;
+        int y = 0;
+        int shelfHeight = 0;
+        for (Sprite sprite : sprites) {
+            int w = sprite.image.getWidth() + 2 * GUTTER;
+            int h = sprite.image.getHeight() + 2 * GUTTER;
+            if (x + w > pageWidth) {
+                x = 0;
+                y += shelfHeight;
+                shelfHeight = 0;
+            }
+            if (y + h > MAX_SIZE) {
+                leftover.add(sprite);
+                continue;
+            }
+            sprite.x = x + GUTTER;
+            sprite.y = y + GUTTER;
+            placed.add(sprite);
+            x += w;
+            shelfHeight = Math.max(shelfHeight, h);
+        }
+        return leftover;
+    }
+
+    /** Draws the sprite's image and repeats its outermost rows, columns and corners across the gutter. */
+    private static void drawExtruded(BufferedImage atlas, Sprite sprite) {
+        int w = sprite.image.getWidth();
+        int h = sprite.image.getHeight();
+        int[] pixels = sprite.image.getRGB(0, 0, w, h, null, 0, w);
+        atlas.setRGB(sprite.x, sprite.y, w, h, pixels, 0, w);
+        for (int g = 1; g <= GUTTER; g++) {
+            atlas.setRGB(sprite.x, sprite.y - g, w, 1, pixels, 0, w);
+            atlas.setRGB(sprite.x, sprite.y + h - 1 + g, w, 1, pixels, (h - 1) * w, w);
+        }
+        for (int y = -GUTTER; y < h + GUTTER; y++) {
+            int row = Math.max(0, Math.min(h - 1, y)) * w;
+            for (int g = 1; g <= GUTTER; g++) {
+                atlas.setRGB(sprite.x - g, sprite.y + y, pixels[row]);
+                atlas.setRGB(sprite.x + w - 1 + g, sprite.y + y, pixels[row + w - 1]);
+            }
+        }
+    }
+
+    private static void deleteStalePages(Path atlasDir, String baseName, int from) throws IOException {
+        int page = from;
+        while (Files.deleteIfExists(atlasDir.resolve(baseName + "." + page + ".png")))
+            page++;
+    }
+
+    private static int powerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    private static void writePng(BufferedImage image, Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            if (!ImageIO.write(image, "png", tempPath.toFile()))
+                throw new IOException("no PNG writer available");
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    private static final class Sprite {
+        final Source source;
+        final BufferedImage image;
+        int x;
+        int y;
+
+        Sprite(Source source, BufferedImage image) {
+            this.source = source;
+            this.image = image;
+        }
+
+        /**
+         * Frame size follows vanilla: the {@code .mcmeta} width/height where given, otherwise a square of the
+         * image's shorter side. Static textures are a single frame covering the whole image.
+         */
+        JsonObject toJson(int page, int pageWidth, int pageHeight) {
+            int width = image.getWidth();
+            int height = image.getHeight();
+            int frameWidth = width;
+            int frameHeight = height;
+            if (source.animation() != null) {
+                boolean hasWidth = source.animation().has("width");
+                boolean hasHeight = source.animation().has("height");
+                int side = Math.min(width, height);
+                frameWidth = hasWidth ? source.animation().get("width").getAsInt() : hasHeight ? width : side;
+                frameHeight = hasHeight ? source.animation().get("height").getAsInt() : hasWidth ? height : side;
+                if (frameWidth <= 0 || frameHeight <= 0 || width % frameWidth != 0 || height % frameHeight != 0) {
+                    frameWidth = width;
+                    frameHeight = height;
+                }
+            }
+
+            JsonObject out = new JsonObject();
+            out.addProperty("page", page);
+            out.addProperty("x", x);
+            out.addProperty("y", y);
+            out.addProperty("width", width);
+            out.addProperty("height", height);
+            out.addProperty("frameWidth", frameWidth);
+            out.addProperty("frameHeight", frameHeight);
+            out.addProperty("frameCount", (width / frameWidth) * (height / frameHeight));
+            // Half a texel inside the frame edges, so sampling at the rect border stays on the frame's own texels.
+            JsonArray uv = new JsonArray();
+            uv.add((x + 0.5) / pageWidth);
+            uv.add((y + 0.5) / pageHeight);
+            uv.add((x + frameWidth - 0.5) / pageWidth);
+            uv.add((y + frameHeight - 0.5) / pageHeight);
+            out.add("uv", uv);
+            if (source.animation() != null)
+                out.add("animation", source.animation());
+            return out;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package dev.rvveber.littletiles.parityexporter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Writes exported texture files (PNGs and their {@code .mcmeta}) and skips the ones whose destination already
+ * holds the same bytes.
+ *
+ * The SHA-256, size and modification time of every file written are kept in {@code .lt-texture-files.json} in
+ * the output directory. A destination whose size and modification time still match its entry is compared by
+ * the recorded hash and never read; any other existing destination of the right size is hashed once. Only
+ * changed files are written, through a sibling temp file and a move.
+ *
+ * With a content store, each distinct file is written once to {@code <store>/<sha[0..2]>/<sha>} and the
+ * destinations are hard links to it, so several output directories share one copy. Where links are not
+ * supported (another file store, or a file system without links) files are copied instead.
+ */
+final class TextureFiles {
+
+    private static final int MANIFEST_VERSION = 1;
+    private static final Gson GSON = new GsonBuilder()
+            .disableHtmlEscaping()
+            .create();
+
+    private final Path outputDir;
+    private final Path manifestPath;
+    private final Path storeDir;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger copied = new AtomicInteger();
+    private final AtomicInteger linked = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicBoolean linksDisabled = new AtomicBoolean();
+
+    private TextureFiles(Path outputDir, Path storeDir) {
+        this.outputDir = outputDir;
+        this.manifestPath = outputDir.resolve(".lt-texture-files.json");
+        this.storeDir = storeDir;
+    }
+
+    /** Loads the manifest from {@code outputDir}; {@code storeDir} is null to copy files instead of linking. */
+    static TextureFiles open(Path outputDir, Path storeDir) {
+        TextureFiles files = new TextureFiles(outputDir, storeDir);
+        if (Files.isRegularFile(files.manifestPath)) {
+            try (Reader reader = Files.newBufferedReader(files.manifestPath, StandardCharsets.UTF_8)) {
+                files.load(JsonParser.parseReader(reader).getAsJsonObject());
+            } catch (Exception e) {
+                files.entries.clear();
+                LittleTilesParityExporter.LOGGER.warn("ignoring unreadable texture file manifest {}", files.manifestPath, e);
+            }
+        }
+        return files;
+    }
+
+    /** Makes {@code target} hold the bytes read from {@code source}, writing only when they differ. */
+    void write(InputStream source, Path target) throws IOException {
+        byte[] bytes = source.readAllBytes();
+        String sha256 = sha256Hex(bytes);
+        String key = outputDir.relativize(target).toString().replace('\\', '/');
+        if (isCurrent(key, target, bytes.length, sha256)) {
+            skipped.incrementAndGet();
+            record(key, target, sha256);
+            return;
+        }
+
+        Files.createDirectories(target.getParent());
+        if (storeDir == null || linksDisabled.get() || !link(bytes, sha256, target))
+            copy(bytes, target);
+        record(key, target, sha256);
+    }
+
+    void save() throws IOException {
+        JsonObject files = new JsonObject();
+        for (Map.Entry<String, Entry> entry : new TreeMap<>(entries).entrySet())
+            files.add(entry.getKey(), entry.getValue().toJson());
+        JsonObject root = new JsonObject();
+        root.addProperty("version", MANIFEST_VERSION);
+        root.add("files", files);
+
+        Path tempPath = manifestPath.resolveSibling(manifestPath.getFileName() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+                GSON.toJson(root, writer);
+            }
+            Files.move(tempPath, manifestPath, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    String describe() {
+        return "textureFiles: copied=" + copied.get() + ", linked=" + linked.get() + ", skipped=" + skipped.get() +
+                ", bytesWritten=" + bytesWritten.get() + (storeDir != null ? ", store=" + storeDir : "");
+    }
+
+    private boolean isCurrent(String key, Path target, long size, String sha256) throws IOException {
+        if (!Files.isRegularFile(target) || Files.size(target) != size)
+            return false;
+        Entry entry = entries.get(key);
+        if (entry != null && entry.size == size && entry.modified == Files.getLastModifiedTime(target).toMillis())
+            return entry.sha256.equals(sha256);
+        return hashFile(target).equals(sha256);
+    }
+
+    private void copy(byte[] bytes, Path target) throws IOException {
+        Path tempPath = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Files.write(tempPath, bytes);
+            Files.move(tempPath, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+        copied.incrementAndGet();
+        bytesWritten.addAndGet(bytes.length);
+    }
+
+    /**
+     * Links {@code target} to the store copy of {@code bytes}. Returns false, and disables linking for the rest of
+     * the batch, if the output directory cannot link into the store.
+     */
+    private boolean link(byte[] bytes, String sha256, Path target) throws IOException {
+        Path stored = storeDir.resolve(sha256.substring(0, 2)).resolve(sha256);
+        if (!Files.isRegularFile(stored) || Files.size(stored) != bytes.length) {
+            Files.createDirectories(stored.getParent());
+            // Unique temp name: two textures with identical bytes may be stored from different workers at once.
+            Path tempPath = Files.createTempFile(stored.getParent(), sha256, ".tmp");
+            try {
+                Files.write(tempPath, bytes);
+                Files.move(tempPath, stored, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tempPath);
+            }
+            bytesWritten.addAndGet(bytes.length);
+        }
+
+        Path tempPath = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Files.deleteIfExists(tempPath);
+            Files.createLink(tempPath, stored);
+            Files.move(tempPath, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | UnsupportedOperationException e) {
+            if (linksDisabled.compareAndSet(false, true))
+                LittleTilesParityExporter.LOGGER.warn("cannot hard-link {} to texture store {}, copying instead: {}", target, storeDir, e.toString());
+            return false;
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+        linked.incrementAndGet();
+        return true;
+    }
+
+    private void record(String key, Path target, String sha256) throws IOException {
+        entries.put(key, new Entry(Files.size(target), Files.getLastModifiedTime(target).toMillis(), sha256));
+    }
+
+    private void load(JsonObject root) {
+        if (!root.has("version") || root.get("version").getAsInt() != MANIFEST_VERSION || !root.has("files"))
+            return;
+        for (Map.Entry<String, JsonElement> entry : root.getAsJsonObject("files").entrySet()) {
+            JsonObject json = entry.getValue().getAsJsonObject();
+            entries.put(entry.getKey(), new Entry(
+                    json.get("size").getAsLong(),
+                    json.get("modified").getAsLong(),
+                    json.get("sha256").getAsString()));
+        }
+    }
+
+    private static String hashFile(Path path) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) >= 0)
+                digest.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String sha256Hex(byte[] bytes) {
+        return HexFormat.of().formatHex(newDigest().digest(bytes));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record Entry(long size, long modified, String sha256) {
+        JsonObject toJson() {
+            JsonObject out = new JsonObject();
+            out.addProperty("size", size);
+            out.addProperty("modified", modified);
+            out.addProperty("sha256", sha256);
+            return out;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package dev.rvveber.littletiles.parityexporter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import net.minecraft.SharedConstants;
+import net.neoforged.fml.ModList;
+import net.neoforged.neoforgespi.language.IModInfo;
+
+/**
+ * On-disk index of resolved blockstate models and model textures, so a texture export can start warm.
+ *
+ * Entries hold the resolved ids together with the asset paths that were found missing while resolving
+ * them; a warm lookup replays those into the report's {@code missingAssets}. The index is tagged with a
+ * fingerprint of the Minecraft version, every loaded mod id and version, and the resource packs, and is
+ * discarded when the fingerprint no longer matches. Lookups and updates are synchronized, since the
+ * texture resolver calls them from every export worker.
+ */
+final class TextureIndex {
+
+    private static final int INDEX_VERSION = 1;
+    private static final Gson GSON = new GsonBuilder()
+            .disableHtmlEscaping()
+            .create();
+
+    private final Path indexPath;
+    private final String fingerprint;
+    private final Map<String, Entry> stateModels = new TreeMap<>();
+    private final Map<String, Entry> modelTextures = new TreeMap<>();
+    private boolean warm;
+    private boolean dirty;
+    private int hits;
+    private int misses;
+
+    private TextureIndex(Path indexPath, String fingerprint) {
+        this.indexPath = indexPath;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Loads the index from {@code indexPath} when it was written for the current mods and resource packs; starts
+     * empty otherwise.
+     */
+    static TextureIndex open(Path indexPath, List<String> packSignatures) {
+        TextureIndex index = new TextureIndex(indexPath, fingerprint(packSignatures));
+        if (Files.isRegularFile(indexPath)) {
+            try (Reader reader = Files.newBufferedReader(indexPath, StandardCharsets.UTF_8)) {
+                index.load(JsonParser.parseReader(reader).getAsJsonObject());
+            } catch (Exception e) {
+                index.stateModels.clear();
+                index.modelTextures.clear();
+                LittleTilesParityExporter.LOGGER.warn("ignoring unreadable texture index {}", indexPath, e);
+            }
+        }
+        return index;
+    }
+
+    /** SHA-256 over the Minecraft version, the sorted {@code modId@version} list and the resource pack signatures. */
+    static String fingerprint(List<String> packSignatures) {
+        List<String> parts = new ArrayList<>();
+        try {
+            parts.add("minecraft@" + SharedConstants.getCurrentVersion().getName());
+        } catch (Exception ignored) {
+            parts.add("minecraft@unknown");
+        }
+        try {
+            for (IModInfo mod : ModList.get().getMods())
+                parts.add(mod.getModId() + "@" + mod.getVersion());
+        } catch (Exception ignored) {
+            parts.add("mods@unknown");
+        }
+        for (String pack : packSignatures)
+            parts.add("pack:" + pack);
+        parts.sort(null);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(String.join("\n", parts).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    synchronized Entry stateModels(String canonicalState) {
+        return count(stateModels.get(canonicalState));
+    }
+
+    synchronized void putStateModels(String canonicalState, Collection<String> models, Collection<String> missing) {
+        stateModels.put(canonicalState, new Entry(List.copyOf(models), List.copyOf(missing)));
+        dirty = true;
+    }
+
+    synchronized Entry modelTextures(String modelId) {
+        return count(modelTextures.get(modelId));
+    }
+
+    synchronized void putModelTextures(String modelId, Collection<String> textures, Collection<String> missing) {
+        modelTextures.put(modelId, new Entry(List.copyOf(textures), List.copyOf(missing)));
+        dirty = true;
+    }
+
+    /** Rewrites the index file if anything was added during this run. */
+    synchronized void save() throws IOException {
+        if (!dirty)
+            return;
+        JsonObject root = new JsonObject();
+        root.addProperty("version", INDEX_VERSION);
+        root.addProperty("fingerprint", fingerprint);
+        root.add("stateModels", toJson(stateModels));
+        root.add("modelTextures", toJson(modelTextures));
+
+        Files.createDirectories(indexPath.getParent());
+        Path tempPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+                GSON.toJson(root, writer);
+            }
+            Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+        dirty = false;
+    }
+
+    synchronized String describe() {
+        return "textureIndex: " + (warm ? "warm" : "cold") + ", hits=" + hits + ", misses=" + misses +
+                ", entries=" + (stateModels.size() + modelTextures.size()) + ", fingerprint=" + fingerprint.substring(0, 12);
+    }
+
+    private Entry count(Entry entry) {
+        if (entry != null)
+            hits++;
+        else
+            misses++;
+        return entry;
+    }
+
+    private void load(JsonObject root) {
+        if (!root.has("version") || root.get("version").getAsInt() != INDEX_VERSION)
+            return;
+        if (!root.has("fingerprint") || !fingerprint.equals(root.get("fingerprint").getAsString())) {
+            LittleTilesParityExporter.LOGGER.info("texture index {} was built for a different mod set or resource packs, rebuilding", indexPath);
+            return;
+        }
+        fromJson(root.getAsJsonObject("stateModels"), stateModels);
+        fromJson(root.getAsJsonObject("modelTextures"), modelTextures);
+        warm = true;
+    }
+
+    private static JsonObject toJson(Map<String, Entry> entries) {
+        JsonObject out = new JsonObject();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            JsonObject json = new JsonObject();
+            json.add("values", toJsonArray(entry.getValue().values));
+            if (!entry.getValue().missing.isEmpty())
+                json.add("missing", toJsonArray(entry.getValue().missing));
+            out.add(entry.getKey(), json);
+        }
+        return out;
+    }
+
+    private static void fromJson(JsonObject json, Map<String, Entry> out) {
+        if (json == null)
+            return;
+        for (Map.Entry<String, JsonElement> entry : json.entrySet()) {
+            JsonObject value = entry.getValue().getAsJsonObject();
+            out.put(entry.getKey(), new Entry(toList(value.getAsJsonArray("values")), toList(value.getAsJsonArray("missing"))));
+        }
+    }
+
+    private static JsonArray toJsonArray(List<String> values) {
+        JsonArray out = new JsonArray();
+        for (String value : values)
+            out.add(value);
+        return out;
+    }
+
+    private static List<String> toList(JsonArray array) {
+        if (array == null)
+            return List.of();
+        List<String> out = new ArrayList<>(array.size());
+        for (JsonElement element : array)
+            out.add(element.getAsString());
+        return List.copyOf(out);
+    }
+
+    /** Resolved ids, in resolution order, and the asset paths found missing while resolving them. */
+    record Entry(List<String> values, List<String> missing) {}
+}
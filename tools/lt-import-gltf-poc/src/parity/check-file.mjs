@@ -20,7 +20,7 @@ import {
   canonicalGroupFromDebug,
   firstDiff,
 } from './schema-tree-compare.mjs';
-import { sanitizeRuntimeMetadata } from './io.mjs';
+import { readNormalizedSnbt, sanitizeRuntimeMetadata } from './io.mjs';
 
 export function checkFile(file, options = {}) {
   const debug = JSON.parse(readFileSync(file, 'utf8'));
@@ -30,14 +30,13 @@ export function checkFile(file, options = {}) {
 
   if (typeof debug.inputPath !== 'string')
     throw new ParseError(`${file}: missing required string field "inputPath".`);
-  if (typeof debug.normalizedSnbt !== 'string')
-    throw new ParseError(`${file}: missing required string field "normalizedSnbt".`);
+  const normalizedSnbt = readNormalizedSnbt(debug, file);
 
   const rawInputPath = path.resolve(debug.inputPath);
   const rawSnbt = readFileSync(rawInputPath, 'utf8');
 
   const parsedRaw = parseLtImportSnbt(rawSnbt);
-  const parsedNormalized = parseLtImportSnbt(debug.normalizedSnbt);
+  const parsedNormalized = parseLtImportSnbt(normalizedSnbt);
 
   if (debug.outsideNeighborPolicy !== 'air') {
     failures.push(
@@ -1,5 +1,7 @@
 import path from 'node:path';
-import { readdirSync, statSync } from 'node:fs';
+import { createHash } from 'node:crypto';
+import { readdirSync, readFileSync, statSync } from 'node:fs';
+import { gunzipSync } from 'node:zlib';
 import { ParseError } from '../lt-import-parser.mjs';
 
 export function parsePositiveIntArg(raw, flagName) {
@@ -27,6 +29,27 @@ export function expandJsonInputs(inputs) {
   return out;
 }
 
+// Reports exported with `snbt=gzip` keep normalized SNBT in a sidecar next to the report instead of inline.
+export function readNormalizedSnbt(debug, file) {
+  if (typeof debug?.normalizedSnbt === 'string')
+    return debug.normalizedSnbt;
+
+  const ref = debug?.normalizedSnbtRef;
+  if (!ref || typeof ref !== 'object' || typeof ref.path !== 'string')
+    throw new ParseError(`${file}: missing required string field "normalizedSnbt" (or "normalizedSnbtRef").`);
+  if (ref.encoding !== 'gzip')
+    throw new ParseError(`${file}: unsupported normalizedSnbtRef encoding ${JSON.stringify(ref.encoding)}.`);
+
+  const sidecarPath = path.resolve(path.dirname(file), ref.path);
+  const bytes = gunzipSync(readFileSync(sidecarPath));
+  if (typeof ref.sha256 === 'string') {
+    const actual = createHash('sha256').update(bytes).digest('hex');
+    if (actual !== ref.sha256.toLowerCase())
+      throw new ParseError(`${file}: normalizedSnbtRef sha256 mismatch for ${sidecarPath} (expected ${ref.sha256}, got ${actual}).`);
+  }
+  return bytes.toString('utf8');
+}
+
 export function sanitizeRuntimeMetadata(debug) {
   const runtimeRaw = debug?.runtime && typeof debug.runtime === 'object'
     ? debug.runtime
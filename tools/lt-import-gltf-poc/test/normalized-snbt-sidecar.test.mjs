@@ -0,0 +1,43 @@
+import test from 'node:test';
+import assert from 'node:assert/strict';
+import path from 'node:path';
+import { createHash } from 'node:crypto';
+import { mkdtempSync, rmSync, writeFileSync } from 'node:fs';
+import { tmpdir } from 'node:os';
+import { gzipSync } from 'node:zlib';
+import { readNormalizedSnbt } from '../src/parity/io.mjs';
+
+const SNBT = '{c:[],t:{},boxes:[I;0,0,0,1,1,1]}';
+
+function withSidecar(run) {
+  const dir = mkdtempSync(path.join(tmpdir(), 'lt-snbt-sidecar-'));
+  try {
+    writeFileSync(path.join(dir, 'sample.snbt.gz'), gzipSync(Buffer.from(SNBT, 'utf8')));
+    run(dir, path.join(dir, 'sample.json'));
+  } finally {
+    rmSync(dir, { recursive: true, force: true });
+  }
+}
+
+test('inline normalizedSnbt is returned as-is', () => {
+  assert.equal(readNormalizedSnbt({ normalizedSnbt: SNBT }, 'sample.json'), SNBT);
+});
+
+test('normalizedSnbtRef is read from the gzip sidecar and verified', () => {
+  withSidecar((dir, file) => {
+    const sha256 = createHash('sha256').update(SNBT, 'utf8').digest('hex');
+    const debug = { normalizedSnbtRef: { path: 'sample.snbt.gz', encoding: 'gzip', sha256 } };
+    assert.equal(readNormalizedSnbt(debug, file), SNBT);
+  });
+});
+
+test('normalizedSnbtRef rejects a sidecar whose hash does not match', () => {
+  withSidecar((dir, file) => {
+    const debug = { normalizedSnbtRef: { path: 'sample.snbt.gz', encoding: 'gzip', sha256: '00'.repeat(32) } };
+    assert.throws(() => readNormalizedSnbt(debug, file), /sha256 mismatch/);
+  });
+});
+
+test('reports without normalized SNBT are rejected', () => {
+  assert.throws(() => readNormalizedSnbt({}, 'sample.json'), /normalizedSnbt/);
+});